@@ -92,6 +92,48 @@ sysprops="${sysprops} -Dcom.sun.management.jmxremote.port=9999"
 sysprops="${sysprops} -Dcom.sun.management.jmxremote.authenticate=false"
 sysprops="${sysprops} -Dcom.sun.management.jmxremote.ssl=false"
 
+# Optional vermilion system properties (uncomment to use):
+#
+# - vermilion.queue.type
+#       Task queue implementation, linked (default), ringbuffer, priority or
+#       deadline (earliest deadline first).
+# - vermilion.queue.capacity
+#       Capacity of a bounded task queue (default 1024). Setting it bounds a
+#       linked task queue; a ringbuffer task queue is always bounded.
+# - vermilion.queue.waitStrategy
+#       How a ringbuffer task queue waits, SPIN, YIELD or PARK (default).
+# - vermilion.queue.overflowPolicy
+#       What a bounded task queue does when full, BLOCK, DROP_NEWEST,
+#       DROP_OLDEST, COALESCE or REJECT (default).
+# - vermilion.queue.blockTimeout
+#       Milliseconds the BLOCK overflow policy waits for space (default 500).
+# - vermilion.queue.agingStep
+#       Milliseconds of waiting in a priority task queue worth one level of
+#       priority (default 100).
+# - vermilion.executor
+#       How tasks are run, fixed (a pool of one thread per processor, the
+#       default), forkjoin (a work-stealing pool in which tasks can fork
+#       subtasks with vermilion.core.Subtasks) or virtual (a virtual thread
+#       per task, for tasks that mostly wait on I/O; falls back to fixed on
+#       JDKs without virtual threads).
+# - vermilion.executor.concurrency
+#       Most tasks running at once with the virtual executor (default 1000).
+# - vermilion.stateTransition
+#       How task state transitions are recorded, logging (default), jdbc
+#       (written to the database as they happen), batching (written to the
+#       database in the background) or singlerow (one row per execution,
+#       needs vermilion-execution-schema-hsqldb.sql).
+#
+#sysprops="${sysprops} -Dvermilion.queue.type=ringbuffer"
+#sysprops="${sysprops} -Dvermilion.queue.capacity=1024"
+#sysprops="${sysprops} -Dvermilion.queue.waitStrategy=PARK"
+#sysprops="${sysprops} -Dvermilion.queue.overflowPolicy=REJECT"
+#sysprops="${sysprops} -Dvermilion.queue.blockTimeout=500"
+#sysprops="${sysprops} -Dvermilion.queue.agingStep=100"
+#sysprops="${sysprops} -Dvermilion.executor=forkjoin"
+#sysprops="${sysprops} -Dvermilion.executor.concurrency=1000"
+#sysprops="${sysprops} -Dvermilion.stateTransition=batching"
+
 # The absolute class name for the class containing the main method.
 #
 mainclass="vermilion.runtime.Main"
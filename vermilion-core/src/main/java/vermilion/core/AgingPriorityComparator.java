@@ -0,0 +1,53 @@
+package vermilion.core;
+
+import java.util.Comparator;
+
+/**
+ * Orders queued runs by priority, aged by how long they have waited.
+ *
+ * <p>
+ * Each run is ranked by the time it was queued less its priority times the
+ * aging step, and the lowest rank runs first. A run therefore goes ahead of
+ * every run of lower priority queued up to one aging step earlier per level of
+ * difference, and behind those queued before that. Low priority runs are
+ * delayed by a bounded amount, never starved. Because the rank of a queued run
+ * doesn't change while it waits, a heap ordered by it stays valid.
+ * </p>
+ *
+ * <p>
+ * Runs that are not {@link TaskExecution}s have priority 0 and rank as if they
+ * were queued at the start of time.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+class AgingPriorityComparator implements Comparator<NamedRunnable> {
+
+    private final long agingStepNanos;
+
+    /**
+     * Construct a new AgingPriorityComparator.
+     *
+     * @param agingStepNanos
+     *            how many nanoseconds of waiting are worth one level of
+     *            priority.
+     */
+    AgingPriorityComparator(long agingStepNanos) {
+        this.agingStepNanos = agingStepNanos;
+    }
+
+    @Override
+    public int compare(NamedRunnable left, NamedRunnable right) {
+        return Long.compare(rank(left), rank(right));
+    }
+
+    private long rank(NamedRunnable task) {
+        if (!(task instanceof TaskExecution)) {
+            return Long.MIN_VALUE;
+        }
+        TaskExecution execution = (TaskExecution) task;
+        return execution.getQueuedNanos() - execution.getPriority()
+                * agingStepNanos;
+    }
+}
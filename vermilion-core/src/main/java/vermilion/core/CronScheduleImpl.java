@@ -0,0 +1,482 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Schedule given by a cron expression.
+ *
+ * <p>
+ * The expression has five fields separated by whitespace: minute (0-59), hour
+ * (0-23), day of month (1-31), month (1-12 or JAN-DEC) and day of week (0-7 or
+ * SUN-SAT, where both 0 and 7 are Sunday). Each field is a comma separated
+ * list of values, ranges ({@code 1-5}), wildcards ({@code *} or {@code ?}) and
+ * steps over either ({@code *}{@code /15}, {@code 8-18/2}). As in the classic
+ * cron, if both day fields are restricted a day matches when either does. The
+ * macros {@code @yearly}, {@code @annually}, {@code @monthly}, {@code @weekly},
+ * {@code @daily}, {@code @midnight} and {@code @hourly} are also accepted.
+ * </p>
+ *
+ * <p>
+ * Each field is parsed once into a bitset held in a {@code long}. Fire times
+ * are computed on primitives only, without Calendar objects, so computing the
+ * next fire time does not allocate. Whole months, days and hours that don't
+ * match are skipped at once, so a search visits at most a few hundred days per
+ * year. Times are in the given time zone; a time that falls in a daylight
+ * saving gap fires when the clocks have moved on. A time that is repeated when
+ * daylight saving ends fires at its first occurrence, and again at its second
+ * if the hour field is a wildcard, so a job that runs every hour or more often
+ * keeps running through the repeated hour and a daily job runs once.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+class CronScheduleImpl implements Schedule {
+
+    private static final long MINUTE_MILLIS = 60000l;
+
+    private static final long DAY_MINUTES = 1440l;
+
+    /**
+     * How many years ahead to look for a matching time before concluding that
+     * there is none. Long enough to find the next 29th of February.
+     */
+    private static final int SEARCH_YEARS = 8;
+
+    private static final String[] MONTH_NAMES = { "JAN", "FEB", "MAR", "APR",
+            "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC" };
+
+    private static final String[] DAY_NAMES = { "SUN", "MON", "TUE", "WED",
+            "THU", "FRI", "SAT" };
+
+    private final String expression;
+
+    private final TimeZone timeZone;
+
+    private final long minutes;
+
+    private final long hours;
+
+    private final long daysOfMonth;
+
+    private final long months;
+
+    private final long daysOfWeek;
+
+    /**
+     * <code>true</code> if a day must match both day fields, which is when
+     * either of them is a wildcard.
+     */
+    private final boolean allDayFields;
+
+    /**
+     * <code>true</code> if a local time repeated when daylight saving ends
+     * fires at both occurrences, which is when the hour field is a wildcard.
+     */
+    private final boolean everyHour;
+
+    /**
+     * Construct a new CronScheduleImpl.
+     *
+     * @param expression
+     *            the cron expression.
+     * @param timeZone
+     *            the time zone in which the expression is evaluated.
+     *
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if the expression is malformed or never matches.
+     */
+    CronScheduleImpl(String expression, TimeZone timeZone) {
+        this.expression = checkNotNull(expression, "Expression can't be null.");
+        this.timeZone = (TimeZone) checkNotNull(timeZone,
+                "Time zone can't be null.").clone();
+
+        String[] fields = expandMacro(expression.trim()).split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException(String.format(
+                    "Cron expression '%s' must have 5 fields.", expression));
+        }
+        minutes = parseField(fields[0], 0, 59, null);
+        hours = parseField(fields[1], 0, 23, null);
+        daysOfMonth = parseField(fields[2], 1, 31, null);
+        months = parseField(fields[3], 1, 12, MONTH_NAMES);
+        long weekDays = parseField(fields[4], 0, 7, DAY_NAMES);
+        if ((weekDays & (1l << 7)) != 0) {
+            weekDays = (weekDays | 1l) & ~(1l << 7);
+        }
+        daysOfWeek = weekDays;
+        allDayFields = isWildcard(fields[2]) || isWildcard(fields[4]);
+        everyHour = isWildcard(fields[1]);
+
+        if (nextWallClockFireTime(System.currentTimeMillis())
+                == Long.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "Cron expression '%s' never matches.", expression));
+        }
+    }
+
+    /**
+     * @return the cron expression.
+     */
+    String getExpression() {
+        return expression;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * A cron schedule has no initial delay; this is always 0.
+     * </p>
+     */
+    @Override
+    public Long getInitialDelay() {
+        return 0l;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * A cron schedule has no fixed interval; this is always <code>null</code>.
+     * </p>
+     */
+    @Override
+    public Long getInterval() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Fire times are in {@link TimeUnit#MILLISECONDS}.
+     * </p>
+     */
+    @Override
+    public TimeUnit getTimeUnit() {
+        return TimeUnit.MILLISECONDS;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The first run is due at the first matching minute after the start.
+     * </p>
+     */
+    @Override
+    public long getFirstFireTime(long startTime) {
+        return getNextFireTime(startTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The next run is due at the first matching minute after the previous one
+     * was due. The calendar fields are those of the wall clock, which may have
+     * been stepped since the times on the {@link MonotonicClock} were taken.
+     * </p>
+     */
+    @Override
+    public long getNextFireTime(long lastFireTime) {
+        if (lastFireTime == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long offset = MonotonicClock.wallClockOffset();
+        long next = nextWallClockFireTime(lastFireTime + offset);
+        return next == Long.MAX_VALUE ? next : next - offset;
+    }
+
+    /**
+     * @return the first matching minute after the given wall clock time, or
+     *         {@link Long#MAX_VALUE} if there is none within the search
+     *         window.
+     */
+    long nextWallClockFireTime(long lastFireTime) {
+        int lastOffset = timeZone.getOffset(lastFireTime);
+        long next = nextFireTime(lastFireTime, lastFireTime + lastOffset);
+        if (everyHour && next != Long.MAX_VALUE) {
+            int nextOffset = timeZone.getOffset(next);
+            if (nextOffset < lastOffset) {
+                // The clocks went back in between, so the second occurrences
+                // of the local times just fired come before the next one.
+                next = Math.min(next, nextFireTime(lastFireTime,
+                        lastFireTime + nextOffset));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return the first time after lastFireTime at a matching minute after the
+     *         given local time, or {@link Long#MAX_VALUE} if there is none
+     *         within the search window.
+     */
+    private long nextFireTime(long lastFireTime, long local) {
+        long minuteOfEpoch = floorDiv(local, MINUTE_MILLIS) + 1;
+        long day = floorDiv(minuteOfEpoch, DAY_MINUTES);
+        int minuteOfDay = (int) (minuteOfEpoch - day * DAY_MINUTES);
+        int hour = minuteOfDay / 60;
+        int minute = minuteOfDay % 60;
+
+        // Civil date of the day, after H. Hinnant's civil_from_days.
+        long z = day + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra
+                - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        int lastYear = year + SEARCH_YEARS;
+        while (year <= lastYear) {
+            if (!isSet(months, month)) {
+                month = nextSetBit(months, month + 1);
+                if (month > 12) {
+                    year++;
+                    month = nextSetBit(months, 1);
+                }
+                dayOfMonth = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (dayOfMonth > daysInMonth(year, month)) {
+                month++;
+                if (month > 12) {
+                    year++;
+                    month = 1;
+                }
+                dayOfMonth = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            long epochDay = epochDay(year, month, dayOfMonth);
+            if (!matchesDay(epochDay, dayOfMonth)) {
+                dayOfMonth++;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            int nextHour = nextSetBit(hours, hour);
+            if (nextHour > 23) {
+                dayOfMonth++;
+                hour = 0;
+                minute = 0;
+                continue;
+            } else if (nextHour != hour) {
+                hour = nextHour;
+                minute = 0;
+            }
+            int nextMinute = nextSetBit(minutes, minute);
+            if (nextMinute > 59) {
+                hour++;
+                minute = 0;
+                continue;
+            }
+            minute = nextMinute;
+
+            long localTime = ((epochDay * DAY_MINUTES) + hour * 60 + minute)
+                    * MINUTE_MILLIS;
+            long time = toTime(localTime, lastFireTime);
+            if (time > lastFireTime) {
+                return time;
+            }
+            // a local time whose occurrences are all before lastFireTime
+            minute++;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the first occurrence of a local time after lastFireTime, the
+     *         time the clocks moved on to if the local time was skipped, or
+     *         {@link Long#MIN_VALUE} if every occurrence is before
+     *         lastFireTime.
+     */
+    private long toTime(long localTime, long lastFireTime) {
+        int rawOffset = timeZone.getRawOffset();
+        long earlier = localTime
+                - timeZone.getOffset(localTime - rawOffset
+                        - timeZone.getDSTSavings());
+        long later = localTime - timeZone.getOffset(localTime - rawOffset);
+        boolean earlierValid = earlier + timeZone.getOffset(earlier)
+                == localTime;
+        boolean laterValid = later + timeZone.getOffset(later) == localTime;
+        if (!earlierValid && !laterValid) {
+            // a local time skipped when daylight saving starts
+            long time = localTime - rawOffset;
+            return time > lastFireTime ? time : Long.MIN_VALUE;
+        } else if (earlierValid && earlier > lastFireTime) {
+            return earlier;
+        } else if (laterValid && later > lastFireTime) {
+            // the second occurrence when daylight saving ends
+            return later;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private boolean matchesDay(long epochDay, int dayOfMonth) {
+        int dayOfWeek = (int) (((epochDay + 4) % 7 + 7) % 7);
+        boolean monthDay = isSet(daysOfMonth, dayOfMonth);
+        boolean weekDay = isSet(daysOfWeek, dayOfWeek);
+        return allDayFields ? monthDay && weekDay : monthDay || weekDay;
+    }
+
+    private static boolean isSet(long bits, int index) {
+        return (bits & (1l << index)) != 0;
+    }
+
+    /**
+     * @return the index of the first set bit at or after from, or 64 if there
+     *         is none.
+     */
+    private static int nextSetBit(long bits, int from) {
+        if (from > 63) {
+            return 64;
+        }
+        return Long.numberOfTrailingZeros(bits & (-1l << from));
+    }
+
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if (dividend % divisor != 0 && dividend < 0) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            boolean leap = (year % 4 == 0 && year % 100 != 0)
+                    || year % 400 == 0;
+            return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the given date, after H.
+     *         Hinnant's days_from_civil.
+     */
+    private static long epochDay(int year, int month, int dayOfMonth) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = (int) (y - era * 400);
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+                + dayOfMonth - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+                + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static boolean isWildcard(String field) {
+        return field.startsWith("*") || field.startsWith("?");
+    }
+
+    private static String expandMacro(String expression) {
+        switch (expression.toLowerCase(Locale.ENGLISH)) {
+        case "@yearly":
+        case "@annually":
+            return "0 0 1 1 *";
+        case "@monthly":
+            return "0 0 1 * *";
+        case "@weekly":
+            return "0 0 * * 0";
+        case "@daily":
+        case "@midnight":
+            return "0 0 * * *";
+        case "@hourly":
+            return "0 * * * *";
+        default:
+            return expression;
+        }
+    }
+
+    /**
+     * Parses one field of an expression into a bitset in which bit n is set if
+     * the field matches n.
+     */
+    private static long parseField(String field, int min, int max,
+            String[] names) {
+        long bits = 0l;
+        for (String part : field.split(",")) {
+            String range = part;
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                range = part.substring(0, slash);
+                step = parseValue(part.substring(slash + 1), 0, null);
+                if (step <= 0) {
+                    throw new IllegalArgumentException(String.format(
+                            "Step in '%s' must be positive.", part));
+                }
+            }
+
+            int from;
+            int to;
+            if (isWildcard(range)) {
+                from = min;
+                to = max;
+            } else {
+                int dash = range.indexOf('-');
+                if (dash >= 0) {
+                    from = parseValue(range.substring(0, dash), min, names);
+                    to = parseValue(range.substring(dash + 1), min, names);
+                } else {
+                    from = parseValue(range, min, names);
+                    to = slash >= 0 ? max : from;
+                }
+            }
+            if (from < min || to > max || from > to) {
+                throw new IllegalArgumentException(String.format(
+                        "'%s' is not within %d-%d.", part, min, max));
+            }
+            for (int value = from; value <= to; value += step) {
+                bits |= 1l << value;
+            }
+        }
+        return bits;
+    }
+
+    private static int parseValue(String value, int min, String[] names) {
+        if (names != null) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(value)) {
+                    return i + min;
+                }
+            }
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format(
+                    "'%s' is not a valid cron value.", value), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,49 @@
+package vermilion.core;
+
+import java.util.Comparator;
+
+/**
+ * Orders queued runs earliest deadline first.
+ *
+ * <p>
+ * A run that was due at a set time should finish before the next run of its
+ * task is due, so a run of a task that fires every second goes ahead of a run
+ * of a task that fires every hour even if it was queued later. Runs with the
+ * same deadline, and runs without one, go in the order they were queued; runs
+ * without a deadline go after all runs that have one.
+ * </p>
+ *
+ * <p>
+ * Runs that are not {@link TaskExecution}s have no deadline and rank as if
+ * they were queued at the start of time.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+class DeadlineComparator implements Comparator<NamedRunnable> {
+
+    @Override
+    public int compare(NamedRunnable left, NamedRunnable right) {
+        int byDeadline = Long.compare(deadline(left), deadline(right));
+        if (byDeadline != 0) {
+            return byDeadline;
+        }
+        return Long.compare(queuedNanos(left), queuedNanos(right));
+    }
+
+    private static long deadline(NamedRunnable task) {
+        if (task instanceof TaskExecution) {
+            long deadline = ((TaskExecution) task).getDeadline();
+            if (deadline > 0) {
+                return deadline;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static long queuedNanos(NamedRunnable task) {
+        return task instanceof TaskExecution ? ((TaskExecution) task)
+                .getQueuedNanos() : Long.MIN_VALUE;
+    }
+}
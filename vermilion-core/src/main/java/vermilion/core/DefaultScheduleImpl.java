@@ -56,4 +56,29 @@ class DefaultScheduleImpl implements Schedule {
     public TimeUnit getTimeUnit() {
         return timeUnit;
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The first run is due one initial delay after the start.
+     * </p>
+     */
+    @Override
+    public long getFirstFireTime(long startTime) {
+        return startTime + timeUnit.toMillis(initialDelay);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * Runs are at a fixed rate: each is due one interval after the previous
+     * one was due.
+     * </p>
+     */
+    @Override
+    public long getNextFireTime(long lastFireTime) {
+        return lastFireTime + timeUnit.toMillis(interval);
+    }
+}
@@ -0,0 +1,16 @@
+package vermilion.core;
+
+/**
+ * Implemented by queued tasks that need to know when a queue discards them
+ * without running them.
+ * 
+ * @author andy
+ * 
+ */
+public interface Discardable {
+
+    /**
+     * Called by a queue after it has dropped this task.
+     */
+    public void discarded();
+}
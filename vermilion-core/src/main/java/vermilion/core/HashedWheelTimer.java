@@ -0,0 +1,439 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import com.google.common.util.concurrent.AbstractService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A Service that fires timeouts from a hashed timing wheel.
+ *
+ * <p>
+ * All timeouts scheduled with an instance of this class share 2 threads: a
+ * tick thread that advances the wheel, and a dispatch thread that runs the
+ * expired timeouts' tasks. Scheduling and cancelling a timeout are both O(1);
+ * neither touches the wheel directly, they are handed to the tick thread which
+ * applies them on the next tick.
+ * </p>
+ *
+ * <p>
+ * Timeouts fire on a tick boundary, so a timeout can be late by up to the tick
+ * duration (plus dispatch time). Tasks run on the single dispatch thread and
+ * are expected to be short; a task that blocks delays every other expired
+ * timeout.
+ * </p>
+ *
+ * <p>
+ * If this Service has not been started when the first timeout is scheduled, it
+ * is started then.
+ * </p>
+ *
+ * <p>
+ * <strong>Implementation note</strong>: A (static) JDK logger named
+ * "wheelTimer" logs certain information at {@linkplain Level.WARNING}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class HashedWheelTimer extends AbstractService {
+
+    private static final Logger wheelTimerLogger = Logger
+            .getLogger("wheelTimer");
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickDuration;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger activeTimeouts = new AtomicInteger();
+
+    private volatile ExecutorService internalExecutor;
+
+    private volatile ExecutorService dispatchExecutor;
+
+    private volatile long startTime;
+
+    private long tick;
+
+    /**
+     * Construct a new HashedWheelTimer with a 10 millisecond tick and 512
+     * buckets.
+     */
+    public HashedWheelTimer() {
+        this(10l, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Construct a new HashedWheelTimer.
+     *
+     * @param tickDuration
+     *            the number of TimeUnits between ticks.
+     * @param unit
+     *            the TimeUnit of the tick duration.
+     * @param ticksPerWheel
+     *            the number of buckets in the wheel; rounded up to a power of
+     *            2.
+     *
+     * @throws IllegalArgumentException
+     *             if tickDuration or ticksPerWheel is not positive.
+     */
+    @Inject
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        checkArgument(tickDuration > 0, "Tick duration must be positive.");
+        checkArgument(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30,
+                "Ticks per wheel must be between 1 and 2^30.");
+        this.tickDuration = checkNotNull(unit, "TimeUnit can't be null.")
+                .toNanos(tickDuration);
+
+        int buckets = 1;
+        while (buckets < ticksPerWheel) {
+            buckets <<= 1;
+        }
+        wheel = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = buckets - 1;
+    }
+
+    /**
+     * Schedules the given task to run once after the given delay.
+     *
+     * @param task
+     *            the task to run.
+     * @param delay
+     *            the number of TimeUnits to wait before running the task. A
+     *            negative delay is treated as 0.
+     * @param unit
+     *            the TimeUnit of the delay.
+     * @return a Timeout that can be used to cancel the task.
+     *
+     * @throws IllegalStateException
+     *             if this timer has been stopped.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        checkNotNull(task, "Task can't be null.");
+        checkNotNull(unit, "TimeUnit can't be null.");
+        if (state() == State.NEW) {
+            startAndWait();
+        }
+        checkState(isRunning(), "Timer is not running.");
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0l))
+                - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        activeTimeouts.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts that are scheduled but have not yet
+     *         expired or been cancelled.
+     */
+    public int getActiveTimeouts() {
+        return activeTimeouts.get();
+    }
+
+    @Override
+    protected void doStart() {
+        ThreadFactoryBuilder threads = new ThreadFactoryBuilder()
+                .setDaemon(true);
+        internalExecutor = Executors.newSingleThreadExecutor(threads
+                .setNameFormat("wheel-timer-tick-%d").build());
+        dispatchExecutor = Executors.newSingleThreadExecutor(threads
+                .setNameFormat("wheel-timer-dispatch-%d").build());
+        addListener(
+                Listeners
+                        .createExecutorServiceControlListener(internalExecutor),
+                MoreExecutors.sameThreadExecutor());
+        addListener(
+                Listeners
+                        .createExecutorServiceControlListener(dispatchExecutor),
+                MoreExecutors.sameThreadExecutor());
+        startTime = System.nanoTime();
+        internalExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                notifyStarted();
+                doRun();
+            }
+        });
+    }
+
+    void doRun() {
+        while (isRunning()) {
+            long deadline = waitForNextTick();
+            if (deadline > 0) {
+                processCancelledTimeouts();
+                transferTimeoutsToBuckets();
+                wheel[(int) (tick & mask)].expireTimeouts(deadline);
+                tick++;
+            }
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        internalExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    int dropped = activeTimeouts.getAndSet(0);
+                    for (Bucket bucket : wheel) {
+                        bucket.clear();
+                    }
+                    pendingTimeouts.clear();
+                    cancelledTimeouts.clear();
+                    dispatchExecutor.shutdown();
+                    if (dropped > 0) {
+                        wheelTimerLogger.warning(String.format(
+                                "Timer stopped with %d unexpired timeouts.",
+                                dropped));
+                    }
+                    notifyStopped();
+                } catch (Throwable t) {
+                    notifyFailed(t);
+                    throw new RuntimeException(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sleeps until the start of the next tick.
+     *
+     * @return the time elapsed since this timer started, or -1 if this timer
+     *         is no longer running.
+     */
+    private long waitForNextTick() {
+        long deadline = tickDuration * (tick + 1);
+        while (true) {
+            long currentTime = System.nanoTime() - startTime;
+            long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+            if (sleepTimeMs <= 0) {
+                return currentTime == 0 ? 1 : currentTime;
+            }
+            try {
+                Thread.sleep(sleepTimeMs);
+            } catch (InterruptedException e) {
+                if (!isRunning()) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void transferTimeoutsToBuckets() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state.get() != Timeout.ST_INIT) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void processCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void dispatch(final Timeout timeout) {
+        activeTimeouts.decrementAndGet();
+        try {
+            dispatchExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable t) {
+                        LogRecord record = new LogRecord(Level.WARNING,
+                                "Timeout task threw an exception.");
+                        record.setThrown(t);
+                        wheelTimerLogger.log(record);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Timeout could not be dispatched.");
+            record.setThrown(e);
+            wheelTimerLogger.log(record);
+        }
+    }
+
+    /**
+     * A handle to a task scheduled with a {@link HashedWheelTimer}.
+     *
+     * @author andy
+     *
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+
+        private static final int ST_CANCELLED = 1;
+
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        // The fields below are only accessed by the tick thread.
+
+        private long remainingRounds;
+
+        private Timeout next;
+
+        private Timeout prev;
+
+        private Bucket bucket;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this Timeout so its task will not run.
+         *
+         * @return {@code true} if this Timeout was cancelled, {@code false} if
+         *         it already expired or was already cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.activeTimeouts.decrementAndGet();
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        /**
+         * @return {@code true} if this Timeout was cancelled.
+         */
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        /**
+         * @return {@code true} if this Timeout expired and its task was handed
+         *         off to run.
+         */
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                timer.dispatch(this);
+            }
+        }
+    }
+
+    /**
+     * A doubly-linked list of Timeouts that hash to the same slot on the
+     * wheel. Only accessed by the tick thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expireTimeouts(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0
+                        && timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A task that is only instantiated when it first runs.
+ *
+ * <p>
+ * Until then, only the class name of the task is kept, so neither the class
+ * nor the object graph of a task that fires rarely is loaded while it waits.
+ * If the task is released after each run, the instance is dropped as soon as
+ * no run of it is in progress and a new one is created for the next run.
+ * </p>
+ *
+ * <p>
+ * The task class must have a public no-argument constructor. If the task can't
+ * be instantiated, the run fails with an {@link IllegalStateException}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class LazyNamedRunnable implements NamedRunnable, Discardable {
+
+    private final String classname;
+
+    private final ClassLoader classLoader;
+
+    private final boolean release;
+
+    private volatile String name;
+
+    private volatile Integer executionId;
+
+    private volatile NamedRunnableState state = NamedRunnableState.STOPPED;
+
+    private NamedRunnable task;
+
+    private int running;
+
+    /**
+     * Constructs a new LazyNamedRunnable whose class is loaded by the class
+     * loader of this class.
+     *
+     * @param classname
+     *            class name of the NamedRunnable implementation.
+     * @param release
+     *            <code>true</code> if the instance is released after each
+     *            run.
+     *
+     * @throws NullPointerException
+     *             if classname is <code>null</code>.
+     */
+    public LazyNamedRunnable(String classname, boolean release) {
+        this(classname, release, LazyNamedRunnable.class.getClassLoader());
+    }
+
+    /**
+     * Constructs a new LazyNamedRunnable.
+     *
+     * @param classname
+     *            class name of the NamedRunnable implementation.
+     * @param release
+     *            <code>true</code> if the instance is released after each
+     *            run.
+     * @param classLoader
+     *            the class loader that loads the class.
+     *
+     * @throws NullPointerException
+     *             if classname or classLoader is <code>null</code>.
+     */
+    public LazyNamedRunnable(String classname, boolean release,
+            ClassLoader classLoader) {
+        this.classname = checkNotNull(classname, "Class name can't be null.");
+        this.release = release;
+        this.classLoader = checkNotNull(classLoader,
+                "Class loader can't be null.");
+    }
+
+    /**
+     * Runs the task, instantiating it first if there is no instance.
+     */
+    @Override
+    public void run() {
+        NamedRunnable instance = acquire();
+        try {
+            instance.run();
+        } finally {
+            relinquish();
+        }
+    }
+
+    /**
+     * Tells the instance that a run was discarded, if there is an instance and
+     * it is {@link Discardable}.
+     */
+    @Override
+    public void discarded() {
+        NamedRunnable instance;
+        synchronized (this) {
+            instance = task;
+        }
+        if (instance instanceof Discardable) {
+            ((Discardable) instance).discarded();
+        }
+    }
+
+    private synchronized NamedRunnable acquire() {
+        if (task == null) {
+            task = instantiate();
+            task.setName(name);
+        }
+        running++;
+        return task;
+    }
+
+    private synchronized void relinquish() {
+        running--;
+        if (release && running == 0) {
+            task = null;
+        }
+    }
+
+    private NamedRunnable instantiate() {
+        try {
+            return Class.forName(classname, true, classLoader)
+                    .asSubclass(NamedRunnable.class).getConstructor()
+                    .newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(String.format(
+                    "Could not instantiate %s.", classname), e.getCause());
+        } catch (ClassNotFoundException | NoSuchMethodException
+                | InstantiationException | IllegalAccessException
+                | ClassCastException e) {
+            throw new IllegalStateException(String.format(
+                    "Could not instantiate %s.", classname), e);
+        }
+    }
+
+    /**
+     * @return the class name of the task.
+     */
+    public String getClassname() {
+        return classname;
+    }
+
+    /**
+     * @return <code>true</code> if the task is currently instantiated.
+     */
+    public synchronized boolean isInstantiated() {
+        return task != null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+        NamedRunnable instance;
+        synchronized (this) {
+            instance = task;
+        }
+        if (instance != null) {
+            instance.setName(name);
+        }
+    }
+
+    @Override
+    public void setExecutionId(Integer executionId) {
+        this.executionId = executionId;
+    }
+
+    @Override
+    public Integer getExecutionId() {
+        return executionId;
+    }
+
+    @Override
+    public NamedRunnableState getState() {
+        return state;
+    }
+
+    @Override
+    public void setState(NamedRunnableState state) {
+        this.state = state;
+    }
+}
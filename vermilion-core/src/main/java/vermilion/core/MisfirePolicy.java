@@ -0,0 +1,42 @@
+package vermilion.core;
+
+/**
+ * What a {@link ScheduledQueuingService} does with runs that came due while it
+ * could not fire them, for example during a long garbage collection pause, a
+ * suspend of the host or while the timer was saturated.
+ *
+ * <p>
+ * A run is missed when the run after it is already due by the time it fires.
+ * Missed runs that are not queued are counted as
+ * {@linkplain ScheduledQueuingService#getCollapsedFires() collapsed fires}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public enum MisfirePolicy {
+
+    /**
+     * Queue every missed run as soon as possible, one after the other.
+     */
+    FIRE_ALL,
+
+    /**
+     * Queue one run now for all the runs that were missed, then continue with
+     * the next run that is due in the future.
+     */
+    FIRE_ONCE_NOW,
+
+    /**
+     * Queue none of the missed runs; continue with the next run that is due in
+     * the future.
+     */
+    SKIP_TO_NEXT,
+
+    /**
+     * Compute when the next run is due from when the previous run finished
+     * rather than from when it was due. At most one scheduled run is queued or
+     * running at any time, so runs can't be missed.
+     */
+    FIXED_DELAY;
+}
@@ -0,0 +1,48 @@
+package vermilion.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock in milliseconds since the epoch that advances with
+ * {@link System#nanoTime()}.
+ *
+ * <p>
+ * The clock is set from the wall clock once, when this class is loaded, and
+ * never again, so a step of the wall clock (by NTP or by hand) does not move
+ * it. Schedules are computed on this clock, so a step of the wall clock neither
+ * makes runs fire early or late nor makes them look missed. Only calendar
+ * Schedules look at the wall clock, through {@link #wallClockOffset()}, to
+ * find the calendar fields of a time.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public final class MonotonicClock {
+
+    private static final long ANCHOR_MILLIS = System.currentTimeMillis();
+
+    private static final long ANCHOR_NANOS = System.nanoTime();
+
+    private MonotonicClock() {
+        // empty constructor
+    }
+
+    /**
+     * @return the current time, in milliseconds since the epoch.
+     */
+    public static long currentTimeMillis() {
+        return ANCHOR_MILLIS
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+                        - ANCHOR_NANOS);
+    }
+
+    /**
+     * @return how far the wall clock is now ahead of this clock, in
+     *         milliseconds; add it to a time on this clock to get the wall
+     *         clock time.
+     */
+    public static long wallClockOffset() {
+        return System.currentTimeMillis() - currentTimeMillis();
+    }
+}
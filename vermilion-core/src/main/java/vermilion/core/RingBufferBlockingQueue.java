@@ -0,0 +1,276 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.inject.Inject;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A bounded, lock-free BlockingQueue backed by a ring buffer.
+ *
+ * <p>
+ * All slots are allocated when the queue is constructed, so queuing an element
+ * allocates nothing. Producers and consumers claim slots by advancing a
+ * sequence counter with a compare-and-set; every slot carries its own sequence
+ * number that tells a producer when the slot is free and a consumer when it
+ * holds an element. Any number of threads may produce and consume
+ * concurrently.
+ * </p>
+ *
+ * <p>
+ * Threads that have to wait in the blocking methods (
+ * {@link #put(Object) put}, {@link #take() take} and the timed
+ * {@link #offer(Object, long, TimeUnit) offer} and
+ * {@link #poll(long, TimeUnit) poll}) do so according to a
+ * {@link WaitStrategy}; they are never signalled.
+ * </p>
+ *
+ * <p>
+ * {@link #size()} and {@link #iterator()} are only estimates while other
+ * threads are using the queue. The iterator is a snapshot and does not support
+ * removal.
+ * </p>
+ *
+ * @author andy
+ *
+ * @param <E>
+ *            the type of elements held in this queue.
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements
+        BlockingQueue<E> {
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final AtomicReferenceArray<E> buffer;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Construct a new RingBufferBlockingQueue.
+     *
+     * @param capacity
+     *            the minimum number of elements this queue can hold; rounded
+     *            up to a power of 2.
+     * @param waitStrategy
+     *            how threads wait in the blocking methods.
+     *
+     * @throws IllegalArgumentException
+     *             if capacity is not positive.
+     * @throws NullPointerException
+     *             if waitStrategy is <code>null</code>.
+     */
+    @Inject
+    public RingBufferBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        checkArgument(capacity > 0 && capacity <= 1 << 30,
+                "Capacity must be between 1 and 2^30.");
+        this.waitStrategy = checkNotNull(waitStrategy,
+                "Wait strategy can't be null.");
+
+        int slots = 1;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        this.capacity = slots;
+        mask = slots - 1;
+        buffer = new AtomicReferenceArray<>(slots);
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, e);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E e = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    sequences.lazySet(index, position + capacity);
+                    return e;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+            E e = buffer.get(index);
+            if (e != null && head.get() == position) {
+                return e;
+            }
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        int attempt = 0;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempt++);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            waitStrategy.idle(attempt++);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        int attempt = 0;
+        E e;
+        while ((e = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(attempt++);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        E e;
+        while ((e = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitStrategy.idle(attempt++);
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        while (true) {
+            long before = head.get();
+            long currentTail = tail.get();
+            if (head.get() == before) {
+                return (int) Math.max(0l,
+                        Math.min(capacity, currentTail - before));
+            }
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        checkArgument(c != this, "Can't drain a queue into itself.");
+        int drained = 0;
+        E e;
+        while (drained < maxElements && (e = poll()) != null) {
+            c.add(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in this queue.
+     *
+     * <p>
+     * The snapshot may miss elements that are being queued or taken while it
+     * is built. The iterator does not support {@link Iterator#remove()}.
+     * </p>
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = Lists.newArrayListWithCapacity(size());
+        long end = tail.get();
+        for (long position = head.get(); position < end; position++) {
+            int index = (int) (position & mask);
+            E e = buffer.get(index);
+            if (e != null && sequences.get(index) == position + 1) {
+                snapshot.add(e);
+            }
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
@@ -5,6 +5,12 @@ import java.util.concurrent.TimeUnit;
 /**
  * Collecting parameter type for task execution scheduling.
  * 
+ * <p>
+ * Besides its parameters, a Schedule computes the times at which a task is
+ * due, so that schedules that are not at a fixed rate can be expressed.
+ * Those times are on the {@link MonotonicClock}.
+ * </p>
+ * 
  * @author andy
  * 
  */
@@ -32,4 +38,25 @@ public interface Schedule {
      * @return the TimeUnit for the initial delay and interval.
      */
     public TimeUnit getTimeUnit();
+
+    /**
+     * Computes when a task is first due once its service starts.
+     * 
+     * @param startTime
+     *            when the service started, in milliseconds since the epoch.
+     * @return when the first run is due, in milliseconds since the epoch, or
+     *         {@link Long#MAX_VALUE} if it is never due.
+     */
+    public long getFirstFireTime(long startTime);
+
+    /**
+     * Computes when a task is next due.
+     * 
+     * @param lastFireTime
+     *            when the previous run was due, in milliseconds since the
+     *            epoch.
+     * @return when the next run is due, in milliseconds since the epoch, or
+     *         {@link Long#MAX_VALUE} if it is never due again.
+     */
+    public long getNextFireTime(long lastFireTime);
 }
@@ -1,15 +1,21 @@
 package vermilion.core;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
-import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.AbstractService;
+import com.google.common.util.concurrent.Service.State;
 
 /**
  * Service that queues NamedRunnable tasks per a given Schedule.
@@ -22,13 +28,61 @@ import com.google.common.util.concurrent.AbstractScheduledService;
  * </p>
  * 
  * <p>
- * A Schedule cannot be changed once an instance of this class is constructed.
- * If the schedule for a running task must change:
- * <ol>
- * <li>Stop this Service.</li>
- * <li>Instantiate a new instance of this Service with the changed Schedule.</li>
- * <li>Start the new Service instance.</li>
- * </ol>
+ * Instances of this class do not own a thread. Each run is armed as a timeout
+ * on a {@link HashedWheelTimer} that is shared with other instances, so a large
+ * number of schedules costs no more threads than a single one. When each run
+ * is due is computed by the {@link Schedule} from when the previous run was
+ * due, regardless of how late the previous run fired; for a fixed-rate
+ * Schedule, each is due one interval after the previous one. Times are taken
+ * from the {@link MonotonicClock}, so a step of the wall clock does not move
+ * them.
+ * </p>
+ * 
+ * <p>
+ * Each run is a new {@link TaskExecution} of the task, so runs that overlap
+ * keep separate execution ids and states. A run is offered to the task queue
+ * once. If the queue is full, what happens is up to the queue (see
+ * {@code BoundedTaskQueue}); a task the queue refuses is logged and the run is
+ * skipped. Scheduled runs are offered with a zero timeout, so a queue that
+ * would wait for space rejects them at once instead of stalling the shared
+ * timer; only runs {@linkplain #queueNow() queued on demand} may wait.
+ * </p>
+ * 
+ * <p>
+ * An instance can be made <em>single-flight</em>: at most one run of its task is
+ * queued and at most one is running at any time. A run that comes due while
+ * one is already queued, or while one is running and another is waiting for
+ * it to finish, is merged into the waiting run and counted as a
+ * {@linkplain #getCoalescedTriggers() coalesced trigger}. A run that comes due
+ * while one is running waits for it to finish before it is queued, so a slow
+ * task never runs in parallel with itself and cannot build up a backlog. The
+ * waiting run stands for the latest run merged into it, and its lateness is
+ * measured from when that run was due; a run already queued keeps the time it
+ * was queued with.
+ * </p>
+ * 
+ * <p>
+ * The parallelism of an instance that is not single-flight can be limited: at
+ * most so many runs of its task are queued or running at any time. A run that
+ * comes due while the limit is reached is held back until one of them
+ * finishes, so the runs of a slow task never take more workers than their
+ * limit. At most one run is held back; a run that comes due while one is held
+ * back is merged into it and counted as a coalesced trigger, so a task that
+ * runs longer than its limit allows cannot build up a backlog.
+ * </p>
+ * 
+ * <p>
+ * Runs that come due while they can't be fired, for example during a long
+ * pause of the JVM, are handled by the {@link MisfirePolicy}. By default every
+ * missed run is queued as soon as possible; the other policies collapse them
+ * so a stall is not followed by a burst of runs, and count the
+ * {@linkplain #getCollapsedFires() collapsed fires}.
+ * </p>
+ * 
+ * <p>
+ * The Schedule of a running instance can be
+ * {@linkplain #reschedule(Schedule) replaced} in place; the task keeps its
+ * runs and counts and no thread or timer is created or stopped.
  * </p>
  * 
  * <p>
@@ -40,21 +94,142 @@ import com.google.common.util.concurrent.AbstractScheduledService;
  * @author andy
  * 
  */
-public class ScheduledQueuingService extends AbstractScheduledService {
+public class ScheduledQueuingService extends AbstractService {
 
     private static final Logger schdQueueLogger = Logger
             .getLogger("queueService");
 
-    private final BlockingQueue<NamedRunnable> taskQueue;
+    private static final int IDLE = 0;
+
+    private static final int QUEUED = 1;
 
-    private int retryCount = 3;
+    private static final int RUNNING = 2;
+
+    private static final int RUNNING_PENDING = 3;
+
+    private final BlockingQueue<NamedRunnable> taskQueue;
 
     private final NamedRunnable task;
 
-    private final Schedule schedule;
+    private volatile Schedule schedule;
+
+    private final HashedWheelTimer timer;
+
+    private final Lock lock = new ReentrantLock();
+
+    private final boolean singleFlight;
+
+    private final SingleFlightTask singleFlightTask;
+
+    private final MisfirePolicy misfirePolicy;
+
+    private final FixedDelayTask fixedDelayTask;
+
+    private final AtomicLong collapsedFires = new AtomicLong();
+
+    private final int maxParallelism;
+
+    private final LimitedTask limitedTask;
 
     /**
-     * Constructs a new ScheduledQueingService.
+     * Guards the runs of a parallelism limited Service.
+     */
+    private final Object limit = new Object();
+
+    /**
+     * The number of runs of a parallelism limited Service that are queued or
+     * running. Guarded by limit.
+     */
+    private int inFlight;
+
+    /**
+     * Whether a run is held back by the parallelism limit. Guarded by limit.
+     */
+    private boolean held;
+
+    /**
+     * When the latest run merged into the run held back was due. Guarded by
+     * limit.
+     */
+    private long heldScheduledTime;
+
+    private volatile int priority;
+
+    private final AtomicInteger flight = new AtomicInteger(IDLE);
+
+    private final AtomicLong coalescedTriggers = new AtomicLong();
+
+    private HashedWheelTimer.Timeout timeout;
+
+    private long nextFireTime;
+
+    /**
+     * When the latest run merged into the run waiting for a single-flight run
+     * to finish was due.
+     */
+    private volatile long pendingScheduledTime;
+
+    /**
+     * Fires a run and arms the timeout for the next one.
+     */
+    private final Runnable fire = new Runnable() {
+
+        @Override
+        public void run() {
+            Throwable failure = null;
+            lock.lock();
+            try {
+                if (!isActive()) {
+                    return;
+                }
+                if (misfirePolicy == MisfirePolicy.FIXED_DELAY) {
+                    timeout = null;
+                    runOneIteration();
+                    return;
+                }
+                long now = MonotonicClock.currentTimeMillis();
+                long followingFireTime = schedule.getNextFireTime(nextFireTime);
+                if (followingFireTime > now
+                        || misfirePolicy == MisfirePolicy.FIRE_ALL) {
+                    runOneIteration();
+                } else {
+                    long overdue = 0;
+                    while (followingFireTime <= now) {
+                        followingFireTime = schedule
+                                .getNextFireTime(followingFireTime);
+                        overdue++;
+                    }
+                    long collapsed;
+                    if (misfirePolicy == MisfirePolicy.FIRE_ONCE_NOW) {
+                        runOneIteration();
+                        collapsed = overdue;
+                    } else {
+                        collapsed = overdue + 1;
+                    }
+                    collapsedFires.addAndGet(collapsed);
+                    if (schdQueueLogger.isLoggable(Level.INFO)) {
+                        schdQueueLogger.info(String.format(
+                                "%s missed %d runs; %d collapsed by %s.",
+                                task.getName(), overdue + 1, collapsed,
+                                misfirePolicy));
+                    }
+                }
+                nextFireTime = followingFireTime;
+                arm();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                notifyFailed(failure);
+            }
+        }
+    };
+
+    /**
+     * Constructs a new ScheduledQueingService that uses the
+     * {@linkplain Timers#sharedTimer() shared timer}.
      * 
      * @param schedule
      *            the Schedule by which the task should be put onto the task
@@ -70,39 +245,630 @@ public class ScheduledQueuingService extends AbstractScheduledService {
     @Inject
     public ScheduledQueuingService(Schedule schedule, NamedRunnable task,
             BlockingQueue<NamedRunnable> taskQueue) {
+        this(schedule, task, taskQueue, Timers.sharedTimer(), false,
+                MisfirePolicy.FIRE_ALL);
+    }
+
+    /**
+     * Constructs a new ScheduledQueingService.
+     * 
+     * @param schedule
+     *            the Schedule by which the task should be put onto the task
+     *            queue.
+     * @param task
+     *            the task.
+     * @param taskQueue
+     *            the task queue.
+     * @param timer
+     *            the timer that fires the runs.
+     * 
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     */
+    public ScheduledQueuingService(Schedule schedule, NamedRunnable task,
+            BlockingQueue<NamedRunnable> taskQueue, HashedWheelTimer timer) {
+        this(schedule, task, taskQueue, timer, false, MisfirePolicy.FIRE_ALL);
+    }
+
+    /**
+     * Constructs a new ScheduledQueingService.
+     * 
+     * @param schedule
+     *            the Schedule by which the task should be put onto the task
+     *            queue.
+     * @param task
+     *            the task.
+     * @param taskQueue
+     *            the task queue.
+     * @param timer
+     *            the timer that fires the runs.
+     * @param singleFlight
+     *            if <code>true</code>, at most one run of the task is queued
+     *            and at most one is running at any time.
+     * 
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     */
+    public ScheduledQueuingService(Schedule schedule, NamedRunnable task,
+            BlockingQueue<NamedRunnable> taskQueue, HashedWheelTimer timer,
+            boolean singleFlight) {
+        this(schedule, task, taskQueue, timer, singleFlight,
+                MisfirePolicy.FIRE_ALL);
+    }
+
+    /**
+     * Constructs a new ScheduledQueingService.
+     * 
+     * @param schedule
+     *            the Schedule by which the task should be put onto the task
+     *            queue.
+     * @param task
+     *            the task.
+     * @param taskQueue
+     *            the task queue.
+     * @param timer
+     *            the timer that fires the runs.
+     * @param singleFlight
+     *            if <code>true</code>, at most one run of the task is queued
+     *            and at most one is running at any time.
+     * @param misfirePolicy
+     *            what to do with runs that were missed.
+     * 
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     */
+    public ScheduledQueuingService(Schedule schedule, NamedRunnable task,
+            BlockingQueue<NamedRunnable> taskQueue, HashedWheelTimer timer,
+            boolean singleFlight, MisfirePolicy misfirePolicy) {
+        this(schedule, task, taskQueue, timer, singleFlight, misfirePolicy, 0);
+    }
+
+    /**
+     * Constructs a new ScheduledQueingService.
+     * 
+     * @param schedule
+     *            the Schedule by which the task should be put onto the task
+     *            queue.
+     * @param task
+     *            the task.
+     * @param taskQueue
+     *            the task queue.
+     * @param timer
+     *            the timer that fires the runs.
+     * @param singleFlight
+     *            if <code>true</code>, at most one run of the task is queued
+     *            and at most one is running at any time.
+     * @param misfirePolicy
+     *            what to do with runs that were missed.
+     * @param maxParallelism
+     *            the most runs of the task that are queued or running at any
+     *            time, or 0 for no limit. Ignored if single-flight.
+     * 
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if maxParallelism is negative.
+     */
+    public ScheduledQueuingService(Schedule schedule, NamedRunnable task,
+            BlockingQueue<NamedRunnable> taskQueue, HashedWheelTimer timer,
+            boolean singleFlight, MisfirePolicy misfirePolicy,
+            int maxParallelism) {
         super();
+        checkArgument(maxParallelism >= 0,
+                "Max parallelism can't be negative.");
         this.schedule = checkNotNull(schedule, "Schedule can't be null.");
         this.task = checkNotNull(task, "Task can't be null.");
         this.taskQueue = checkNotNull(taskQueue, "Task queue can't be null.");
+        this.timer = checkNotNull(timer, "Timer can't be null.");
+        this.singleFlight = singleFlight;
+        this.singleFlightTask = singleFlight ? new SingleFlightTask() : null;
+        this.misfirePolicy = checkNotNull(misfirePolicy,
+                "Misfire policy can't be null.");
+        this.fixedDelayTask = misfirePolicy == MisfirePolicy.FIXED_DELAY
+                ? new FixedDelayTask() : null;
+        this.maxParallelism = singleFlight ? 0 : maxParallelism;
+        this.limitedTask = this.maxParallelism > 0 ? new LimitedTask() : null;
+    }
+
+    @Override
+    protected void doStart() {
+        Throwable failure = null;
+        lock.lock();
+        try {
+            nextFireTime = schedule.getFirstFireTime(MonotonicClock
+                    .currentTimeMillis());
+            arm();
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            lock.unlock();
+        }
+        if (failure != null) {
+            notifyFailed(failure);
+        } else {
+            notifyStarted();
+        }
     }
 
     @Override
+    protected void doStop() {
+        lock.lock();
+        try {
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+            dropHeldRun();
+            notifyStopped();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if this Service is running, or is starting
+     *         and has armed its first run. The first run can fire before
+     *         {@link #doStart()} has notified that this Service started,
+     *         since that is done without holding the lock.
+     */
+    private boolean isActive() {
+        State state = state();
+        return state == State.STARTING || state == State.RUNNING;
+    }
+
+    /**
+     * Arms a timeout that fires at the next fire time, unless the Schedule
+     * has no more runs. Callers must hold the lock.
+     */
+    private void arm() {
+        if (nextFireTime == Long.MAX_VALUE) {
+            timeout = null;
+            schdQueueLogger.info(String.format(
+                    "%s has no more scheduled runs.", task.getName()));
+            return;
+        }
+        timeout = timer.newTimeout(fire,
+                nextFireTime - MonotonicClock.currentTimeMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Puts the task onto the task queue.
+     * 
+     * @throws Exception
+     *             if the task could not be queued.
+     */
     protected void runOneIteration() throws Exception {
         schdQueueLogger.finer("Queuing task.");
-        boolean taskAccepted = false;
-        int attempts = 0;
-        while (!taskAccepted && attempts < retryCount) {
-            taskAccepted = taskQueue.offer(task, 500, TimeUnit.MILLISECONDS);
-            if (!taskAccepted) {
+        if (misfirePolicy == MisfirePolicy.FIXED_DELAY) {
+            if (!offerNow(execution(fixedDelayTask, nextFireTime))) {
                 schdQueueLogger
-                        .info("Failed to put task into the queue, retrying.");
-                attempts++;
+                        .warning("Task was not queued for execution. Skipping run.");
+                fixedDelayTask.finished();
             }
-        }
-
-        if (!taskAccepted) {
+        } else if (!queue(nextFireTime, false)) {
             schdQueueLogger
                     .warning("Task was not queued for execution. Skipping run.");
         }
     }
 
-    @Override
-    protected Scheduler scheduler() {
-        return Scheduler.newFixedRateSchedule(schedule.getInitialDelay(),
-                schedule.getInterval(), schedule.getTimeUnit());
+    /**
+     * Creates a run of the given task with the priority of this Service. A run
+     * that was due at a set time has to finish by the next fire time after it;
+     * that is its deadline.
+     * 
+     * @param scheduledTime
+     *            when the run was due, or 0 if it was not due at a set time.
+     */
+    private TaskExecution execution(NamedRunnable runnable, long scheduledTime) {
+        long deadline = 0l;
+        if (scheduledTime > 0) {
+            deadline = schedule.getNextFireTime(scheduledTime);
+            if (deadline == Long.MAX_VALUE) {
+                deadline = 0l;
+            }
+        }
+        return new TaskExecution(runnable, scheduledTime, priority, deadline);
+    }
+
+    /**
+     * Puts a new {@link TaskExecution run} of the task onto the task queue
+     * now, regardless of the Schedule.
+     * 
+     * <p>
+     * If this Service is single-flight and a run is already waiting, the
+     * request is merged into that run.
+     * </p>
+     * 
+     * @return <code>false</code> if the task queue refused the task.
+     */
+    public boolean queueNow() {
+        return queue(0l, true);
+    }
+
+    /**
+     * Offers a run to the task queue without waiting for space, even if the
+     * queue would otherwise wait (see {@code OverflowPolicy.BLOCK}). Runs are
+     * offered this way from the shared timer thread, which must not stall the
+     * runs of every other task, and from worker threads.
+     */
+    private boolean offerNow(NamedRunnable run) {
+        try {
+            return taskQueue.offer(run, 0l, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Offers a run to the task queue, waiting for space only if the caller may
+     * block.
+     */
+    private boolean offer(NamedRunnable run, boolean mayBlock) {
+        return mayBlock ? taskQueue.offer(run) : offerNow(run);
+    }
+
+    /**
+     * Puts a new run of the task onto the task queue, or merges it into a run
+     * that is waiting if this Service is single-flight.
+     * 
+     * @param scheduledTime
+     *            when the run was due, or 0 if it was not due at a set time.
+     * @param mayBlock
+     *            <code>true</code> if the caller may wait for space in the
+     *            task queue; <code>false</code> on the timer thread.
+     */
+    private boolean queue(long scheduledTime, boolean mayBlock) {
+        if (limitedTask != null) {
+            return queueLimited(scheduledTime, mayBlock);
+        } else if (!singleFlight) {
+            return offer(execution(task, scheduledTime), mayBlock);
+        }
+        while (true) {
+            int state = flight.get();
+            if (state == IDLE) {
+                if (flight.compareAndSet(IDLE, QUEUED)) {
+                    if (offer(execution(singleFlightTask, scheduledTime),
+                            mayBlock)) {
+                        return true;
+                    }
+                    flight.compareAndSet(QUEUED, IDLE);
+                    return false;
+                }
+            } else if (state == RUNNING) {
+                pendingScheduledTime = scheduledTime;
+                if (flight.compareAndSet(RUNNING, RUNNING_PENDING)) {
+                    return true;
+                }
+            } else {
+                if (state == RUNNING_PENDING) {
+                    pendingScheduledTime = scheduledTime;
+                }
+                coalescedTriggers.incrementAndGet();
+                if (schdQueueLogger.isLoggable(Level.FINER)) {
+                    schdQueueLogger.finer(String.format(
+                            "%s already waiting to run; trigger coalesced.",
+                            task.getName()));
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Puts a new run of the task onto the task queue, or holds it back if the
+     * parallelism limit is reached.
+     */
+    private boolean queueLimited(long scheduledTime, boolean mayBlock) {
+        synchronized (limit) {
+            if (inFlight >= maxParallelism) {
+                if (held) {
+                    coalescedTriggers.incrementAndGet();
+                }
+                held = true;
+                heldScheduledTime = scheduledTime;
+                if (schdQueueLogger.isLoggable(Level.FINER)) {
+                    schdQueueLogger.finer(String.format(
+                            "%s at its parallelism limit; run held back.",
+                            task.getName()));
+                }
+                return true;
+            }
+            inFlight++;
+        }
+        if (offer(execution(limitedTask, scheduledTime), mayBlock)) {
+            return true;
+        }
+        limitedTask.finished();
+        return false;
+    }
+
+    /**
+     * Drops the run held back by the parallelism limit, if there is one.
+     */
+    private void dropHeldRun() {
+        synchronized (limit) {
+            held = false;
+        }
+    }
+
+    /**
+     * Replaces the Schedule of this Service without stopping it.
+     * 
+     * <p>
+     * If the next run is armed, it is cancelled and the first run of the new
+     * Schedule is armed in its place, as if this Service had just started. The
+     * same happens if the old Schedule had no more runs. If the next run is
+     * firing, or a fixed-delay run is in flight, the run after it is computed
+     * from the new Schedule. A run held back by the parallelism limit was due
+     * on the old Schedule and is dropped. The task, its queued and running runs
+     * and the counts kept by this Service are unaffected.
+     * </p>
+     * 
+     * @param schedule
+     *            the new Schedule.
+     * 
+     * @throws NullPointerException
+     *             if schedule is <code>null</code>.
+     */
+    public void reschedule(Schedule schedule) {
+        checkNotNull(schedule, "Schedule can't be null.");
+        lock.lock();
+        try {
+            this.schedule = schedule;
+            dropHeldRun();
+            boolean exhausted = timeout == null
+                    && nextFireTime == Long.MAX_VALUE;
+            if ((timeout != null && timeout.cancel())
+                    || (exhausted && isRunning())) {
+                nextFireTime = schedule.getFirstFireTime(MonotonicClock
+                        .currentTimeMillis());
+                arm();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the priority given to new runs of the task.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority given to new runs of the task. Runs already queued
+     * keep the priority they were queued with.
+     * 
+     * @param priority
+     *            the priority; higher runs first on a
+     *            {@linkplain TaskQueues#createPriorityQueue(long, TimeUnit)
+     *            priority queue}.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return the current Schedule.
+     */
+    public Schedule getSchedule() {
+        return schedule;
     }
 
     public NamedRunnable getTask() {
         return task;
     }
+
+    /**
+     * @return <code>true</code> if at most one run of the task is queued and
+     *         at most one is running at any time.
+     */
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * @return the most runs of the task that are queued or running at any
+     *         time, or 0 if there is no limit.
+     */
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    /**
+     * @return 1 if a run is held back by the parallelism limit, otherwise 0.
+     */
+    public int getHeldRuns() {
+        synchronized (limit) {
+            return held ? 1 : 0;
+        }
+    }
+
+    /**
+     * @return the number of runs that were merged into a run already waiting.
+     */
+    public long getCoalescedTriggers() {
+        return coalescedTriggers.get();
+    }
+
+    /**
+     * @return what is done with runs that were missed.
+     */
+    public MisfirePolicy getMisfirePolicy() {
+        return misfirePolicy;
+    }
+
+    /**
+     * @return the number of missed runs that were not queued because of the
+     *         {@link MisfirePolicy}.
+     */
+    public long getCollapsedFires() {
+        return collapsedFires.get();
+    }
+
+    /**
+     * Delegates the NamedRunnable methods other than run to the task.
+     */
+    private abstract class DelegatingTask implements NamedRunnable {
+
+        @Override
+        public String getName() {
+            return task.getName();
+        }
+
+        @Override
+        public void setName(String name) {
+            task.setName(name);
+        }
+
+        @Override
+        public void setExecutionId(Integer executionId) {
+            task.setExecutionId(executionId);
+        }
+
+        @Override
+        public Integer getExecutionId() {
+            return task.getExecutionId();
+        }
+
+        @Override
+        public NamedRunnableState getState() {
+            return task.getState();
+        }
+
+        @Override
+        public void setState(NamedRunnableState state) {
+            task.setState(state);
+        }
+    }
+
+    /**
+     * Wraps the task so that a fixed-delay Service arms the next run when a
+     * run finishes or is discarded from the queue.
+     */
+    private class FixedDelayTask extends DelegatingTask implements Discardable {
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished();
+            }
+        }
+
+        @Override
+        public void discarded() {
+            finished();
+        }
+
+        private void finished() {
+            lock.lock();
+            try {
+                if (isRunning() && timeout == null) {
+                    nextFireTime = schedule.getNextFireTime(MonotonicClock
+                            .currentTimeMillis());
+                    arm();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wraps the task so a single-flight Service learns when a run starts,
+     * finishes or is discarded from the queue.
+     */
+    private class SingleFlightTask extends DelegatingTask implements
+            Discardable {
+
+        @Override
+        public void run() {
+            flight.set(RUNNING);
+            try {
+                task.run();
+            } finally {
+                finished();
+            }
+        }
+
+        private void finished() {
+            while (true) {
+                int state = flight.get();
+                if (state == RUNNING_PENDING && isRunning()) {
+                    if (flight.compareAndSet(RUNNING_PENDING, QUEUED)) {
+                        if (!offerNow(execution(this, pendingScheduledTime))) {
+                            flight.compareAndSet(QUEUED, IDLE);
+                            schdQueueLogger
+                                    .warning("Waiting run was not queued for execution. Skipping run.");
+                        }
+                        return;
+                    }
+                } else if (flight.compareAndSet(state, IDLE)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void discarded() {
+            flight.compareAndSet(QUEUED, IDLE);
+        }
+    }
+
+    /**
+     * Wraps the task so a parallelism limited Service queues a run it held
+     * back when a run finishes or is discarded from the queue.
+     */
+    private class LimitedTask extends DelegatingTask implements Discardable {
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished();
+            }
+        }
+
+        @Override
+        public void discarded() {
+            try {
+                if (task instanceof Discardable) {
+                    ((Discardable) task).discarded();
+                }
+            } finally {
+                finished();
+            }
+        }
+
+        /**
+         * Hands the place of a run that finished to the run held back, if
+         * there is one and this Service is still running.
+         */
+        private void finished() {
+            while (true) {
+                boolean running = isRunning();
+                long scheduledTime;
+                synchronized (limit) {
+                    if (!held || !running) {
+                        held = false;
+                        inFlight--;
+                        return;
+                    }
+                    held = false;
+                    scheduledTime = heldScheduledTime;
+                }
+                if (offerNow(execution(this, scheduledTime))) {
+                    return;
+                }
+                schdQueueLogger
+                        .warning("Held run was not queued for execution. Skipping run.");
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package vermilion.core;
 
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,4 +32,51 @@ public class Schedules {
             TimeUnit timeUnit) {
         return new DefaultScheduleImpl(initialDelay, interval, timeUnit);
     }
+
+    /**
+     * Returns a Schedule given by a cron expression, in the default time zone.
+     * 
+     * @param expression
+     *            a cron expression of five fields: minute, hour, day of month,
+     *            month and day of week.
+     * @return a Schedule.
+     * @throws IllegalArgumentException
+     *             if the expression is malformed or never matches.
+     */
+    public static Schedule createCronSchedule(String expression) {
+        return createCronSchedule(expression, TimeZone.getDefault());
+    }
+
+    /**
+     * Returns a Schedule given by a cron expression.
+     * 
+     * @param expression
+     *            a cron expression of five fields: minute, hour, day of month,
+     *            month and day of week.
+     * @param timeZone
+     *            the time zone in which the expression is evaluated.
+     * @return a Schedule.
+     * @throws IllegalArgumentException
+     *             if the expression is malformed or never matches.
+     */
+    public static Schedule createCronSchedule(String expression,
+            TimeZone timeZone) {
+        return new CronScheduleImpl(expression, timeZone);
+    }
+
+    /**
+     * Returns a Schedule whose fire times are those of the given Schedule
+     * shifted by an offset.
+     * 
+     * @param schedule
+     *            the Schedule to shift.
+     * @param offset
+     *            the shift in milliseconds; see {@link Stagger}.
+     * @return a Schedule.
+     */
+    public static Schedule createStaggeredSchedule(Schedule schedule,
+            long offset) {
+        return offset == 0 ? schedule : new StaggeredScheduleImpl(schedule,
+                offset);
+    }
 }
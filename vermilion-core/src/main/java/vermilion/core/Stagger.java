@@ -0,0 +1,73 @@
+package vermilion.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * How the fire times of a task are offset so that tasks on the same Schedule
+ * don't all fire in the same millisecond.
+ *
+ * <p>
+ * The offset is chosen once per task, within a window that is normally the
+ * interval of its Schedule, and every run of the task is shifted by it (see
+ * {@link Schedules#createStaggeredSchedule(Schedule, long)}). Tasks with the
+ * same interval are then spread across the interval instead of bunching at
+ * its start.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public enum Stagger {
+
+    /**
+     * No offset.
+     */
+    NONE {
+        @Override
+        public long offset(String taskName, long window) {
+            return 0l;
+        }
+    },
+
+    /**
+     * An offset derived from a hash of the task name. The same task always
+     * gets the same offset, so the spread is the same on every start.
+     */
+    HASH {
+        @Override
+        public long offset(String taskName, long window) {
+            if (window <= 0) {
+                return 0l;
+            }
+            long hash = Hashing.murmur3_32().hashString(taskName).asInt();
+            return (hash & 0xffffffffl) % window;
+        }
+    },
+
+    /**
+     * A random offset, chosen anew each time the task is started.
+     */
+    JITTER {
+        @Override
+        public long offset(String taskName, long window) {
+            if (window <= 0) {
+                return 0l;
+            }
+            return ThreadLocalRandom.current().nextLong(window);
+        }
+    };
+
+    /**
+     * Chooses the offset of a task.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param window
+     *            the offset is at least 0 and less than this many
+     *            milliseconds.
+     * @return the offset in milliseconds.
+     */
+    public abstract long offset(String taskName, long window);
+}
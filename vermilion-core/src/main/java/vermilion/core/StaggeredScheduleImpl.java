@@ -0,0 +1,90 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Schedule whose fire times are those of another Schedule shifted by a fixed
+ * offset.
+ *
+ * @author andy
+ *
+ */
+class StaggeredScheduleImpl implements Schedule {
+
+    private final Schedule schedule;
+
+    private final long offset;
+
+    /**
+     * Construct a new StaggeredScheduleImpl.
+     *
+     * @param schedule
+     *            the Schedule to shift.
+     * @param offset
+     *            the shift in milliseconds.
+     *
+     * @throws NullPointerException
+     *             if schedule is <code>null</code>.
+     * @throws IllegalArgumentException
+     *             if offset is negative.
+     */
+    StaggeredScheduleImpl(Schedule schedule, long offset) {
+        checkArgument(offset >= 0, "Offset can't be negative.");
+        this.schedule = checkNotNull(schedule, "Schedule can't be null.");
+        this.offset = offset;
+    }
+
+    /**
+     * @return the shift in milliseconds.
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getInitialDelay() {
+        return schedule.getInitialDelay();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getInterval() {
+        return schedule.getInterval();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimeUnit getTimeUnit() {
+        return schedule.getTimeUnit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFirstFireTime(long startTime) {
+        return shift(schedule.getFirstFireTime(startTime));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getNextFireTime(long lastFireTime) {
+        return shift(schedule.getNextFireTime(lastFireTime - offset));
+    }
+
+    private long shift(long fireTime) {
+        return fireTime == Long.MAX_VALUE ? fireTime : fireTime + offset;
+    }
+}
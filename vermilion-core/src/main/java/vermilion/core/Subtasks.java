@@ -0,0 +1,105 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Forks and joins subtasks from within a running task.
+ *
+ * <p>
+ * A task that runs in a {@linkplain TaskExecutors#createForkJoinPool(int)
+ * work-stealing pool} can split its work into subtasks with these methods
+ * instead of building an Executor of its own. Forked subtasks are queued to the
+ * thread running the task and stolen by idle threads of the pool; a thread
+ * that joins a subtask that has not been stolen runs it itself, so joining
+ * never leaves a thread idle.
+ * </p>
+ *
+ * <p>
+ * Outside a work-stealing pool, a subtask runs in the calling thread when it is
+ * forked, so a task that uses these methods runs correctly, if sequentially,
+ * with any Executor.
+ * </p>
+ *
+ * <p>
+ * Joining a subtask that failed throws what it threw if that was unchecked,
+ * and a RuntimeException caused by it otherwise.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class Subtasks {
+
+    private Subtasks() {
+        // empty constructor
+    }
+
+    /**
+     * @return <code>true</code> if the calling thread belongs to a
+     *         work-stealing pool, so that forked subtasks run in parallel.
+     */
+    public static boolean inForkJoinPool() {
+        return ForkJoinTask.inForkJoinPool();
+    }
+
+    /**
+     * Starts a subtask. Its result is had by {@link ForkJoinTask#join()
+     * joining} the returned task.
+     *
+     * @param subtask
+     *            the subtask.
+     * @return the forked subtask.
+     *
+     * @throws NullPointerException
+     *             if subtask is <code>null</code>.
+     */
+    public static <V> ForkJoinTask<V> fork(Callable<V> subtask) {
+        ForkJoinTask<V> task = ForkJoinTask.adapt(checkNotNull(subtask,
+                "Subtask can't be null."));
+        if (inForkJoinPool()) {
+            task.fork();
+        } else {
+            task.quietlyInvoke();
+        }
+        return task;
+    }
+
+    /**
+     * Runs subtasks in parallel and waits for all of them.
+     *
+     * @param subtasks
+     *            the subtasks.
+     * @return the results of the subtasks, in the order of the subtasks.
+     *
+     * @throws NullPointerException
+     *             if subtasks or any of them is <code>null</code>.
+     */
+    public static <V> List<V> invokeAll(
+            Collection<? extends Callable<V>> subtasks) {
+        List<ForkJoinTask<V>> tasks = Lists.newArrayListWithCapacity(subtasks
+                .size());
+        for (Callable<V> subtask : subtasks) {
+            tasks.add(ForkJoinTask.adapt(checkNotNull(subtask,
+                    "Subtask can't be null.")));
+        }
+        if (inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (ForkJoinTask<V> task : tasks) {
+                task.quietlyInvoke();
+            }
+        }
+        List<V> results = Lists.newArrayListWithCapacity(tasks.size());
+        for (ForkJoinTask<V> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,251 @@
+package vermilion.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A single run of a task.
+ *
+ * <p>
+ * The task itself is the definition of the work and is shared by all of its
+ * runs. The execution id, state and timings of a run are kept here instead, so
+ * that several runs of the same task can be in the queue or running at once
+ * without overwriting each other's records. A new instance is created for each
+ * run; instances are not reused.
+ * </p>
+ *
+ * <p>
+ * If the task is {@link Discardable}, it is told when this run is discarded.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class TaskExecution implements NamedRunnable, Discardable {
+
+    private final NamedRunnable task;
+
+    private volatile String name;
+
+    private volatile Integer executionId;
+
+    private volatile NamedRunnableState state = NamedRunnableState.STOPPED;
+
+    private final long queuedTime;
+
+    private final long queuedNanos;
+
+    private final long scheduledTime;
+
+    private final int priority;
+
+    private final long deadline;
+
+    private volatile long startTime;
+
+    private volatile long endTime;
+
+    /**
+     * Constructs a new run of the given task, queued now.
+     *
+     * @param task
+     *            the task to run.
+     *
+     * @throws NullPointerException
+     *             if task is <code>null</code>.
+     */
+    public TaskExecution(NamedRunnable task) {
+        this(task, 0l);
+    }
+
+    /**
+     * Constructs a new run of the given task, queued now, that was due at the
+     * given time.
+     *
+     * @param task
+     *            the task to run.
+     * @param scheduledTime
+     *            when the run was due, in milliseconds since the epoch, or 0 if
+     *            it was not due at a set time.
+     *
+     * @throws NullPointerException
+     *             if task is <code>null</code>.
+     */
+    public TaskExecution(NamedRunnable task, long scheduledTime) {
+        this(task, scheduledTime, 0);
+    }
+
+    /**
+     * Constructs a new run of the given task, queued now, that was due at the
+     * given time.
+     *
+     * @param task
+     *            the task to run.
+     * @param scheduledTime
+     *            when the run was due, in milliseconds since the epoch, or 0 if
+     *            it was not due at a set time.
+     * @param priority
+     *            the priority of the run; higher runs first on a
+     *            {@linkplain TaskQueues#createPriorityQueue(long, java.util.concurrent.TimeUnit)
+     *            priority queue}.
+     *
+     * @throws NullPointerException
+     *             if task is <code>null</code>.
+     */
+    public TaskExecution(NamedRunnable task, long scheduledTime, int priority) {
+        this(task, scheduledTime, priority, 0l);
+    }
+
+    /**
+     * Constructs a new run of the given task, queued now, that was due at the
+     * given time and should finish by the given deadline.
+     *
+     * @param task
+     *            the task to run.
+     * @param scheduledTime
+     *            when the run was due, in milliseconds since the epoch, or 0 if
+     *            it was not due at a set time.
+     * @param priority
+     *            the priority of the run; higher runs first on a
+     *            {@linkplain TaskQueues#createPriorityQueue(long, java.util.concurrent.TimeUnit)
+     *            priority queue}.
+     * @param deadline
+     *            when the run should have finished, in milliseconds since the
+     *            epoch, or 0 if it has no deadline. The earliest deadline runs
+     *            first on a {@linkplain TaskQueues#createDeadlineQueue()
+     *            deadline queue}.
+     *
+     * @throws NullPointerException
+     *             if task is <code>null</code>.
+     */
+    public TaskExecution(NamedRunnable task, long scheduledTime, int priority,
+            long deadline) {
+        this.task = checkNotNull(task, "Task can't be null.");
+        this.name = task.getName();
+        this.queuedTime = MonotonicClock.currentTimeMillis();
+        this.queuedNanos = System.nanoTime();
+        this.scheduledTime = scheduledTime;
+        this.priority = priority;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Runs the task, recording when the run started and ended.
+     */
+    @Override
+    public void run() {
+        startTime = MonotonicClock.currentTimeMillis();
+        try {
+            task.run();
+        } finally {
+            endTime = MonotonicClock.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public void discarded() {
+        if (task instanceof Discardable) {
+            ((Discardable) task).discarded();
+        }
+    }
+
+    /**
+     * @return the task this is a run of.
+     */
+    public NamedRunnable getTask() {
+        return task;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of this run; the task keeps its own name.
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Integer getExecutionId() {
+        return executionId;
+    }
+
+    @Override
+    public void setExecutionId(Integer executionId) {
+        this.executionId = executionId;
+    }
+
+    @Override
+    public NamedRunnableState getState() {
+        return state;
+    }
+
+    @Override
+    public void setState(NamedRunnableState state) {
+        this.state = state;
+    }
+
+    /**
+     * @return when this run was created, in milliseconds since the epoch on
+     *         the {@link MonotonicClock}, as are its scheduled, start and end
+     *         times and its deadline.
+     */
+    public long getQueuedTime() {
+        return queuedTime;
+    }
+
+    /**
+     * @return when this run was due, in milliseconds since the epoch, or 0 if
+     *         it was not due at a set time.
+     */
+    public long getScheduledTime() {
+        return scheduledTime;
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} when this run was
+     *         created, for measuring how long it waited to start.
+     */
+    public long getQueuedNanos() {
+        return queuedNanos;
+    }
+
+    /**
+     * @return the priority of this run.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return when this run should have finished, in milliseconds since the
+     *         epoch, or 0 if it has no deadline.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return when this run started, in milliseconds since the epoch, or 0 if
+     *         it has not started.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return when this run ended, in milliseconds since the epoch, or 0 if it
+     *         has not ended.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s]", name, executionId);
+    }
+}
@@ -8,7 +8,10 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -25,8 +28,8 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
 /**
- * A Service that will poll a queue for a {@linkplain NamedRunnable} instance
- * and execute it.
+ * A Service that will take {@linkplain NamedRunnable} instances from a queue
+ * and execute them.
  * 
  * <p>
  * This Service serves as a "consumer" in the producer-consumer model.
@@ -35,8 +38,19 @@ import com.google.common.util.concurrent.MoreExecutors;
  * </p>
  * 
  * <p>
+ * The dispatcher thread blocks on the queue, so a task is handed to the
+ * Executor pool as soon as a producer queues it and a thread in the pool is
+ * free. While every thread is busy, runs wait in the task queue rather than in
+ * the pool, so a queue that orders its runs, by priority or by deadline,
+ * decides which runs next. Stopping this Service interrupts the dispatcher
+ * thread rather than waiting for it to notice.
+ * </p>
+ * 
+ * <p>
  * Instances of this class can be configured through the constructor to have an
- * Executor pool of a given size. A good value for this is the number of
+ * Executor pool of a given size, or to run tasks with a given Executor, such as
+ * a {@linkplain TaskExecutors#createForkJoinPool(int) work-stealing pool} in
+ * which tasks can fork {@link Subtasks}. A good value for this is the number of
  * available processors which can be obtained via the {@linkplain Runtime}
  * class.
  * </p>
@@ -59,8 +73,18 @@ public class TaskExecutionService extends AbstractService {
 
     private volatile ExecutorService internalExecutor;
 
+    private volatile Thread dispatcher;
+
     private final ListeningExecutorService taskExecutorService;
 
+    private final int poolSize;
+
+    private final Semaphore idleWorkers;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final AtomicLong completedCount = new AtomicLong();
+
     private final Set<ListenableFuture<?>> tasks = Sets.newHashSet();
 
     private final Lock lock = new ReentrantLock();
@@ -113,10 +137,31 @@ public class TaskExecutionService extends AbstractService {
     @Inject
     public TaskExecutionService(BlockingQueue<NamedRunnable> taskQueue,
             StateTransition stateTransition, int execPoolSize) {
+        this(taskQueue, stateTransition, TaskExecutors
+                .createFixedPool(execPoolSize), execPoolSize);
+    }
+
+    /**
+     * Construct a new TaskExecutionService that runs tasks with the given
+     * Executor, such as one made by {@link TaskExecutors}.
+     * 
+     * @param taskQueue
+     *            the task queue.
+     * @param executor
+     *            the Executor that runs the tasks; it is shut down when this
+     *            Service stops.
+     * @param execPoolSize
+     *            the most tasks handed to the Executor at once.
+     */
+    public TaskExecutionService(BlockingQueue<NamedRunnable> taskQueue,
+            StateTransition stateTransition, ExecutorService executor,
+            int execPoolSize) {
         super();
         this.taskQueue = checkNotNull(taskQueue, "Task queue is null.");
-        taskExecutorService = MoreExecutors.listeningDecorator(Executors
-                .newFixedThreadPool(execPoolSize));
+        taskExecutorService = MoreExecutors.listeningDecorator(checkNotNull(
+                executor, "Executor is null."));
+        poolSize = execPoolSize;
+        idleWorkers = new Semaphore(execPoolSize);
     }
 
     @Override
@@ -130,6 +175,7 @@ public class TaskExecutionService extends AbstractService {
 
             @Override
             public void run() {
+                dispatcher = Thread.currentThread();
                 lock.lock();
                 try {
                     evictorService.scheduleAtFixedRate(tasksEvictor, 10l, 10l,
@@ -153,35 +199,85 @@ public class TaskExecutionService extends AbstractService {
     void doRun() {
         while (isRunning()) {
             try {
-                NamedRunnable task = taskQueue.poll(500, TimeUnit.MILLISECONDS);
-                if (task != null) {
-                    
-                    
-                    ListenableFuture<?> taskFuture = taskExecutorService
-                            .submit(task);
-                    taskFuture.addListener(new Runnable() {
-                        public void run() {
-                            taskExecLogger.info("Task completed.");
-                        }
-                    }, MoreExecutors.sameThreadExecutor());
-                    lock.lock();
-                    try {
-                        tasks.add(taskFuture);
-                    } finally {
-                        lock.unlock();
+                idleWorkers.acquire();
+                NamedRunnable task;
+                try {
+                    task = taskQueue.take();
+                } catch (InterruptedException e) {
+                    idleWorkers.release();
+                    throw e;
+                }
+                activeCount.incrementAndGet();
+                ListenableFuture<?> taskFuture;
+                try {
+                    taskFuture = taskExecutorService.submit(task);
+                } catch (RuntimeException e) {
+                    activeCount.decrementAndGet();
+                    idleWorkers.release();
+                    throw e;
+                }
+                taskFuture.addListener(new Runnable() {
+                    public void run() {
+                        activeCount.decrementAndGet();
+                        completedCount.incrementAndGet();
+                        idleWorkers.release();
+                        taskExecLogger.info("Task completed.");
                     }
+                }, MoreExecutors.sameThreadExecutor());
+                lock.lock();
+                try {
+                    tasks.add(taskFuture);
+                } finally {
+                    lock.unlock();
                 }
             } catch (InterruptedException e) {
-                taskExecLogger
-                        .warning("Execution has been interrupted. Propagating interrupt to caller.");
-                Thread.currentThread().interrupt();
+                if (isRunning()) {
+                    taskExecLogger
+                            .warning("Execution has been interrupted. Propagating interrupt to caller.");
+                    Thread.currentThread().interrupt();
+                }
+                break;
             }
         }
     }
 
+    /**
+     * @return the most tasks handed to the Executor at once; the number of
+     *         threads in the Executor pool.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the number of tasks running or being handed to the Executor
+     *         pool.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return the number of tasks that have finished running, or were
+     *         cancelled, since this Service was constructed.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return the number of tasks waiting in the task queue.
+     */
+    public int getQueueSize() {
+        return taskQueue.size();
+    }
+
     @Override
     protected void doStop() {
 
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
         internalExecutor.execute(new Runnable() {
 
             @Override
@@ -0,0 +1,102 @@
+package vermilion.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Static factories for the Executors a {@link TaskExecutionService} runs tasks
+ * with.
+ *
+ * @author andy
+ *
+ */
+public class TaskExecutors {
+
+    private TaskExecutors() {
+        // empty constructor
+    }
+
+    /**
+     * Returns a pool of a fixed number of threads.
+     *
+     * @param size
+     *            the number of threads.
+     * @return an ExecutorService.
+     */
+    public static ExecutorService createFixedPool(int size) {
+        return Executors.newFixedThreadPool(size);
+    }
+
+    /**
+     * Returns a work-stealing pool. Tasks running in it can split their work
+     * into {@link Subtasks}, which idle threads of the pool steal, so a task
+     * that forks uses every thread the other tasks leave free without adding
+     * any.
+     *
+     * @param parallelism
+     *            the number of threads kept running.
+     * @return an ExecutorService.
+     */
+    public static ExecutorService createForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return <code>true</code> if the running JDK has virtual threads.
+     */
+    public static boolean hasVirtualThreads() {
+        return VirtualThreadsHolder.NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Returns an Executor that runs each task in a new virtual thread. A task
+     * that blocks on I/O releases the platform thread it runs on, so many more
+     * blocking tasks can run at once than there are threads in a pool.
+     *
+     * <p>
+     * The JDK method is looked up by reflection, so this class still runs on
+     * JDKs without virtual threads; check {@link #hasVirtualThreads()} first.
+     * A task that blocks while holding a monitor keeps its platform thread.
+     * </p>
+     *
+     * @return an ExecutorService.
+     *
+     * @throws UnsupportedOperationException
+     *             if the running JDK has no virtual threads.
+     */
+    public static ExecutorService createVirtualThreadExecutor() {
+        Method newExecutor = VirtualThreadsHolder.NEW_EXECUTOR;
+        if (newExecutor == null) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not available on this JDK.");
+        }
+        try {
+            return (ExecutorService) newExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not available on this JDK.", e);
+        }
+    }
+
+    /**
+     * Finds {@code Executors.newVirtualThreadPerTaskExecutor()} once. It is
+     * also called once, since on some JDKs it exists but throws unless preview
+     * features are enabled.
+     */
+    private static class VirtualThreadsHolder {
+        static final Method NEW_EXECUTOR = find();
+
+        private static Method find() {
+            try {
+                Method newExecutor = Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor");
+                ((ExecutorService) newExecutor.invoke(null)).shutdown();
+                return newExecutor;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
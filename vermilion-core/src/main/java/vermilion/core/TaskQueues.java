@@ -0,0 +1,77 @@
+package vermilion.core;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Queues;
+
+/**
+ * Static factories for task queue implementations.
+ *
+ * @author andy
+ *
+ */
+public class TaskQueues {
+
+    private TaskQueues() {
+        // empty constructor
+    }
+
+    /**
+     * Returns an unbounded, linked task queue.
+     *
+     * @return a BlockingQueue.
+     */
+    public static <E> BlockingQueue<E> createLinkedQueue() {
+        return Queues.newLinkedBlockingQueue();
+    }
+
+    /**
+     * Returns a bounded, lock-free task queue backed by a ring buffer.
+     *
+     * @param capacity
+     *            the minimum number of tasks the queue can hold; rounded up to
+     *            a power of 2.
+     * @param waitStrategy
+     *            how threads wait for the queue to become non-empty or
+     *            non-full.
+     * @return a BlockingQueue.
+     * @see RingBufferBlockingQueue
+     */
+    public static <E> BlockingQueue<E> createRingBufferQueue(int capacity,
+            WaitStrategy waitStrategy) {
+        return new RingBufferBlockingQueue<>(capacity, waitStrategy);
+    }
+
+    /**
+     * Returns an unbounded task queue that hands out the run of highest
+     * priority first, aged by how long each run has waited.
+     *
+     * @param agingStep
+     *            how long a run must wait to go ahead of a run one level of
+     *            priority higher that was queued after it.
+     * @param unit
+     *            the TimeUnit of the aging step.
+     * @return a BlockingQueue.
+     * @see TaskExecution#getPriority()
+     * @see AgingPriorityComparator
+     */
+    public static BlockingQueue<NamedRunnable> createPriorityQueue(
+            long agingStep, TimeUnit unit) {
+        return new PriorityBlockingQueue<>(11, new AgingPriorityComparator(
+                unit.toNanos(agingStep)));
+    }
+
+    /**
+     * Returns an unbounded task queue that hands out the run with the earliest
+     * deadline first.
+     *
+     * @return a BlockingQueue.
+     * @see TaskExecution#getDeadline()
+     * @see DeadlineComparator
+     */
+    public static BlockingQueue<NamedRunnable> createDeadlineQueue() {
+        return new PriorityBlockingQueue<>(11, new DeadlineComparator());
+    }
+}
@@ -0,0 +1,47 @@
+package vermilion.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Static factories for {@link HashedWheelTimer} instances.
+ *
+ * @author andy
+ *
+ */
+public class Timers {
+
+    private Timers() {
+        // empty constructor
+    }
+
+    /**
+     * Returns a new HashedWheelTimer. The timer is started when the first
+     * timeout is scheduled with it.
+     *
+     * @param tickDuration
+     *            the number of TimeUnits between ticks.
+     * @param unit
+     *            the TimeUnit of the tick duration.
+     * @param ticksPerWheel
+     *            the number of buckets in the wheel.
+     * @return a HashedWheelTimer.
+     */
+    public static HashedWheelTimer createHashedWheelTimer(long tickDuration,
+            TimeUnit unit, int ticksPerWheel) {
+        return new HashedWheelTimer(tickDuration, unit, ticksPerWheel);
+    }
+
+    /**
+     * Returns the HashedWheelTimer shared by every
+     * {@link ScheduledQueuingService} that was not given its own timer.
+     *
+     * @return the shared HashedWheelTimer.
+     */
+    public static HashedWheelTimer sharedTimer() {
+        return SharedTimerHolder.TIMER;
+    }
+
+    private static class SharedTimerHolder {
+        static final HashedWheelTimer TIMER = new HashedWheelTimer();
+    }
+}
@@ -0,0 +1,76 @@
+package vermilion.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits for a {@link RingBufferBlockingQueue} to become
+ * non-empty or non-full.
+ *
+ * <p>
+ * Each strategy trades CPU for wake-up latency. A waiting thread calls
+ * {@link #idle(int)} once per failed attempt, passing the number of attempts
+ * it has made so far.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public enum WaitStrategy {
+
+    /**
+     * Busy-spins. Lowest latency; burns a core for every waiting thread.
+     */
+    SPIN {
+        @Override
+        void idle(int attempt) {
+            // spin
+        }
+    },
+
+    /**
+     * Spins briefly, then yields the processor to other threads.
+     */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt >= SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spins briefly, yields briefly, then parks for a period that doubles
+     * with every attempt up to 1 millisecond. Uses next to no CPU while idle,
+     * at the cost of up to 1 millisecond of wake-up latency.
+     */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                return;
+            } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                int shift = Math.min(attempt - SPIN_TRIES - YIELD_TRIES, 10);
+                LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000l << shift));
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+
+    private static final int YIELD_TRIES = 100;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS
+            .toNanos(1l);
+
+    /**
+     * Waits once.
+     *
+     * @param attempt
+     *            the number of failed attempts made so far.
+     */
+    abstract void idle(int attempt);
+}
@@ -0,0 +1,570 @@
+package vermilion.management;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static vermilion.management.PooledDataSource.ConnectionPoolType.TOMCAT_JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import vermilion.core.Listeners;
+import vermilion.core.NamedRunnable;
+import vermilion.core.NamedRunnable.NamedRunnableState;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * StateTransition that records transitions in the database in the background.
+ *
+ * <p>
+ * Transitions are put on a bounded in-memory buffer and the calling thread
+ * returns at once; it never waits for a connection or the database. A writer
+ * thread takes transitions off the buffer and writes them on a single
+ * connection, in one transaction per flush. A flush happens when
+ * {@code batchSize} transitions are waiting or {@code flushInterval} after
+ * the first of them was taken, whichever comes first. The
+ * {@code task_execution} row of each new run is inserted on its own to get its
+ * generated key; the {@code task_execution_status} rows are inserted as a
+ * single JDBC batch.
+ * </p>
+ *
+ * <p>
+ * If the buffer is full, the transition is dropped and counted rather than
+ * making the task wait. Transitions of a run whose {@code task_execution} row
+ * could not be written are counted as failed.
+ * </p>
+ *
+ * <p>
+ * This class is a Service: transitions are only written while it is running.
+ * Stopping it does not interrupt the writer, so a flush in progress is
+ * finished. Every transition still in the buffer is then written out before
+ * the service terminates, so it should be stopped after the services that run
+ * tasks.
+ * </p>
+ *
+ * <p>
+ * The execution ids given to tasks are assigned in memory when a run is
+ * starting and are not the ids of the {@code task_execution} rows.
+ * </p>
+ *
+ * <p>
+ * <strong>Implementation note</strong>: A (static) JDK logger
+ * {@linkplain Class#getName() named} for this class logs flushes at
+ * {@linkplain Level.FINE} and errors at {@linkplain Level.WARNING}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class BatchingJdbcStateTransition extends AbstractService implements
+        StateTransition, StateTransitionMonitor {
+
+    private static final Logger logger = Logger
+            .getLogger(BatchingJdbcStateTransition.class.getName());
+
+    private static final String INSERT_TASK_EXECUTION_SQL = "INSERT INTO "
+            + "task_execution (task_name, created_time) VALUES (?, ?)";
+
+    private static final String INSERT_TASK_EXEC_STATUS_SQL = "INSERT INTO "
+            + "task_execution_status (task_exec_id, exec_status, update_time) "
+            + "VALUES (?, ?, ?)";
+
+    /**
+     * Most runs whose database id is remembered while waiting for the run to
+     * stop.
+     */
+    private static final int MAX_OPEN_EXECUTIONS = 65536;
+
+    /**
+     * Put on the buffer to wake the writer when the service is stopping; never
+     * written.
+     */
+    private static final Transition STOP = new Transition(null, null, null, 0l);
+
+    private final DataSource dataSource;
+
+    private final BlockingQueue<Transition> buffer;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final SequenceGenerator executionIdSeq = new SequenceGenerator();
+
+    /**
+     * Database ids of runs that have started but not stopped, keyed by
+     * execution id. Only used by the writer thread.
+     */
+    private final Map<Integer, Integer> openExecutions = new LinkedHashMap<Integer, Integer>() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+            return size() > MAX_OPEN_EXECUTIONS;
+        }
+    };
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+
+    private volatile ExecutorService internalExecutor;
+
+    /**
+     * Constructs a new BatchingJdbcStateTransition that buffers up to 8192
+     * transitions and flushes up to 256 of them at least once a second.
+     *
+     * @param dataSourceProvider
+     *            provider of the DataSource to write to.
+     */
+    @Inject
+    public BatchingJdbcStateTransition(
+            @PooledDataSource(TOMCAT_JDBC) Provider<DataSource> dataSourceProvider) {
+        this(dataSourceProvider, 8192, 256, 1l, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs a new BatchingJdbcStateTransition.
+     *
+     * @param dataSourceProvider
+     *            provider of the DataSource to write to.
+     * @param capacity
+     *            the most transitions waiting to be written.
+     * @param batchSize
+     *            the most transitions written in one flush.
+     * @param flushInterval
+     *            the longest a transition waits for a batch to fill.
+     * @param unit
+     *            the TimeUnit of the flush interval.
+     *
+     * @throws IllegalArgumentException
+     *             if capacity, batchSize or flushInterval is not positive.
+     * @throws NullPointerException
+     *             if dataSourceProvider or unit is <code>null</code>.
+     */
+    public BatchingJdbcStateTransition(
+            Provider<DataSource> dataSourceProvider, int capacity,
+            int batchSize, long flushInterval, TimeUnit unit) {
+        checkArgument(capacity > 0, "Capacity must be positive.");
+        checkArgument(batchSize > 0, "Batch size must be positive.");
+        checkArgument(flushInterval > 0, "Flush interval must be positive.");
+        this.dataSource = checkNotNull(dataSourceProvider,
+                "DataSource provider is null.").get();
+        this.capacity = capacity;
+        this.buffer = new ArrayBlockingQueue<Transition>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = checkNotNull(unit, "TimeUnit is null.")
+                .toNanos(flushInterval);
+    }
+
+    @Override
+    public void abandonded(NamedRunnable task) {
+        record(task, NamedRunnableState.ABANDONED);
+    }
+
+    @Override
+    public void completed(NamedRunnable task) {
+        record(task, NamedRunnableState.COMPLETED);
+    }
+
+    @Override
+    public void failed(NamedRunnable task) {
+        record(task, NamedRunnableState.FAILED);
+    }
+
+    @Override
+    public void starting(NamedRunnable task) {
+        task.setExecutionId(executionIdSeq.next());
+        record(task, NamedRunnableState.STARTING);
+    }
+
+    @Override
+    public void started(NamedRunnable task) {
+        record(task, NamedRunnableState.STARTED);
+    }
+
+    @Override
+    public void stopping(NamedRunnable task) {
+        record(task, NamedRunnableState.STOPPING);
+    }
+
+    @Override
+    public void stopped(NamedRunnable task) {
+        record(task, NamedRunnableState.STOPPED);
+    }
+
+    @Override
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    @Override
+    public long getLastFlushMillis() {
+        return lastFlushMillis.get();
+    }
+
+    @Override
+    public long getTotalFlushMillis() {
+        return totalFlushMillis.get();
+    }
+
+    @Override
+    protected void doStart() {
+        internalExecutor = Executors.newSingleThreadExecutor();
+        addListener(
+                Listeners
+                        .createExecutorServiceControlListener(internalExecutor),
+                MoreExecutors.sameThreadExecutor());
+        internalExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                notifyStarted();
+                doRun();
+            }
+        });
+    }
+
+    void doRun() {
+        List<Transition> batch = Lists.newArrayListWithCapacity(batchSize);
+        while (isRunning()) {
+            try {
+                Transition first = buffer.poll(flushIntervalNanos,
+                        TimeUnit.NANOSECONDS);
+                if (first == null || first == STOP) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    if (batch.remove(STOP)) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Transition next = buffer.poll(remaining,
+                            TimeUnit.NANOSECONDS);
+                    if (next == null || next == STOP) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (isRunning()) {
+                    logger.warning("Writer has been interrupted. Propagating interrupt to caller.");
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            } finally {
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void doStop() {
+        // The writer is woken rather than interrupted, as an interrupt could
+        // abort a flush in the middle of its JDBC calls. If the buffer is
+        // full, the writer is not waiting and sees the service is no longer
+        // running once its current flush is done. The buffer is written out
+        // once the writer has returned.
+        buffer.offer(STOP);
+        internalExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    List<Transition> batch = Lists
+                            .newArrayListWithCapacity(batchSize);
+                    while (buffer.drainTo(batch, batchSize) > 0) {
+                        if (batch.remove(STOP) && batch.isEmpty()) {
+                            continue;
+                        }
+                        flush(batch);
+                        batch.clear();
+                    }
+                    notifyStopped();
+                } catch (Throwable t) {
+                    notifyFailed(t);
+                    throw new RuntimeException(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Puts a transition on the buffer and marks the task's state.
+     */
+    private void record(NamedRunnable task, NamedRunnableState state) {
+        if (!buffer.offer(new Transition(task.getExecutionId(), task
+                .getName(), state, System.currentTimeMillis()))) {
+            dropped.incrementAndGet();
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format(
+                        "%s: %s, %s not recorded; buffer is full.",
+                        task.getName(), task.getExecutionId(), state));
+            }
+        }
+        task.setState(state);
+    }
+
+    /**
+     * Writes a batch of transitions in one transaction.
+     */
+    private void flush(List<Transition> batch) {
+        long start = System.currentTimeMillis();
+        Connection conn = null;
+        PreparedStatement taskExecutionPs = null;
+        PreparedStatement taskExecutionStatusPs = null;
+        Map<Integer, Integer> started = new LinkedHashMap<Integer, Integer>();
+        boolean autoCommit = true;
+
+        try {
+            conn = dataSource.getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            taskExecutionPs = conn.prepareStatement(INSERT_TASK_EXECUTION_SQL,
+                    Statement.RETURN_GENERATED_KEYS);
+            taskExecutionStatusPs = conn
+                    .prepareStatement(INSERT_TASK_EXEC_STATUS_SQL);
+
+            int statuses = 0;
+            int unknown = 0;
+            for (Transition transition : batch) {
+                if (transition.state == NamedRunnableState.STARTING) {
+                    Integer id = insertTaskExecution(taskExecutionPs,
+                            transition);
+                    if (id != null) {
+                        started.put(transition.executionId, id);
+                    }
+                }
+                Integer id = started.get(transition.executionId);
+                if (id == null) {
+                    id = openExecutions.get(transition.executionId);
+                }
+                if (id == null) {
+                    unknown++;
+                    continue;
+                }
+                taskExecutionStatusPs.setInt(1, id);
+                taskExecutionStatusPs.setString(2, transition.state.name());
+                taskExecutionStatusPs.setTimestamp(3, new Timestamp(
+                        transition.time));
+                taskExecutionStatusPs.addBatch();
+                statuses++;
+            }
+            if (statuses > 0) {
+                taskExecutionStatusPs.executeBatch();
+            }
+            conn.commit();
+
+            openExecutions.putAll(started);
+            for (Transition transition : batch) {
+                if (transition.state == NamedRunnableState.STOPPED) {
+                    openExecutions.remove(transition.executionId);
+                }
+            }
+            written.addAndGet(statuses);
+            failed.addAndGet(unknown);
+        } catch (SQLException e) {
+            rollbackQuietly(conn);
+            failed.addAndGet(batch.size());
+            LogRecord record = new LogRecord(Level.WARNING, String.format(
+                    "Unable to record %d state transitions in the database.",
+                    batch.size()));
+            record.setThrown(e);
+            logger.log(record);
+        } finally {
+            closeQuietly(taskExecutionPs);
+            closeQuietly(taskExecutionStatusPs);
+            restoreAutoCommitQuietly(conn, autoCommit);
+            closeQuietly(conn);
+            long elapsed = System.currentTimeMillis() - start;
+            flushes.incrementAndGet();
+            lastFlushMillis.set(elapsed);
+            totalFlushMillis.addAndGet(elapsed);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format(
+                        "Flushed %d state transitions in %d ms.", batch.size(),
+                        elapsed));
+            }
+        }
+    }
+
+    /**
+     * Inserts the task_execution row of a new run.
+     *
+     * @return the generated id of the row, or <code>null</code> if none was
+     *         returned.
+     */
+    private Integer insertTaskExecution(PreparedStatement taskExecutionPs,
+            Transition transition) throws SQLException {
+        taskExecutionPs.setString(1, transition.taskName);
+        taskExecutionPs.setTimestamp(2, new Timestamp(transition.time));
+        if (taskExecutionPs.executeUpdate() == 0) {
+            logger.warning("Task execution was not saved to the database. State transition will not be able to be recorded.");
+            return null;
+        }
+        ResultSet generatedKeys = taskExecutionPs.getGeneratedKeys();
+        try {
+            if (generatedKeys.next()) {
+                return generatedKeys.getInt(1);
+            }
+            logger.warning("Saved task execution to the database, but was unable to get back an execution Id. State transitions will not be able to be recorded in the database.");
+            return null;
+        } finally {
+            closeQuietly(generatedKeys);
+        }
+    }
+
+    private void rollbackQuietly(Connection conn) {
+        try {
+            if (conn != null && !conn.isClosed()) {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to roll back state transitions.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    private void restoreAutoCommitQuietly(Connection conn, boolean autoCommit) {
+        try {
+            if (conn != null && !conn.isClosed()) {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to release database resources.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    private void closeQuietly(ResultSet resultSet) {
+        try {
+            if (resultSet != null && !resultSet.isClosed()) {
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to release database resources.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        try {
+            if (conn != null && !conn.isClosed()) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to release database resources.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    private void closeQuietly(Statement stmt) {
+        try {
+            if (stmt != null && !stmt.isClosed()) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to release database resources.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    /**
+     * A state transition waiting to be written.
+     */
+    private static final class Transition {
+
+        private final Integer executionId;
+
+        private final String taskName;
+
+        private final NamedRunnableState state;
+
+        private final long time;
+
+        private Transition(Integer executionId, String taskName,
+                NamedRunnableState state, long time) {
+            this.executionId = executionId;
+            this.taskName = taskName;
+            this.state = state;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package vermilion.management;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import vermilion.core.Discardable;
+import vermilion.core.NamedRunnable;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ForwardingBlockingQueue;
+
+/**
+ * A task queue with a fixed capacity and an {@link OverflowPolicy} for tasks
+ * offered while it is full.
+ *
+ * <p>
+ * The capacity is enforced by this class, so the queue it decorates may be
+ * unbounded. Every non-blocking way of queuing a task ({@link #offer(Object)
+ * offer} and {@link #add(Object) add}) applies the overflow policy; with
+ * {@link OverflowPolicy#BLOCK} that means waiting for space until the
+ * configured deadline. {@link #put(Object) put} always waits for space, and the
+ * timed {@link #offer(Object, long, TimeUnit) offer} waits until its own
+ * timeout before applying the policy; with {@code BLOCK} it then rejects the
+ * task rather than wait again. Scheduled runs are offered with a timeout of
+ * zero, so they never wait for space whatever the policy.
+ * </p>
+ *
+ * <p>
+ * {@link OverflowPolicy#DROP_OLDEST} discards the task at the head of the
+ * decorated queue, which is the oldest task only if that queue is FIFO.
+ * </p>
+ *
+ * <p>
+ * Tasks that are shed are told so if they are {@link Discardable}.
+ * </p>
+ *
+ * <p>
+ * The iterator of this queue does not support removal; use
+ * {@link #remove(Object) remove}, {@link #removeAll(Collection) removeAll} or
+ * {@link #retainAll(Collection) retainAll}.
+ * </p>
+ *
+ * <p>
+ * <strong>Implementation note</strong>: A (static) JDK logger
+ * {@linkplain Class#getName() named} for this class logs shed and rejected
+ * tasks at {@linkplain Level.FINE}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class BoundedTaskQueue extends ForwardingBlockingQueue<NamedRunnable>
+        implements TaskQueueMonitor {
+
+    private static final Logger logger = Logger
+            .getLogger(BoundedTaskQueue.class.getName());
+
+    private final BlockingQueue<NamedRunnable> tasks;
+
+    private final int capacity;
+
+    private final Semaphore permits;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final long blockTimeoutNanos;
+
+    private final ConcurrentMap<String, AtomicInteger> queuedByName = Maps
+            .newConcurrentMap();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * Construct a new BoundedTaskQueue.
+     *
+     * @param tasks
+     *            the queue to decorate.
+     * @param capacity
+     *            the maximum number of tasks in the queue.
+     * @param overflowPolicy
+     *            what to do with tasks offered while the queue is full.
+     * @param blockTimeout
+     *            how long {@link OverflowPolicy#BLOCK} waits for space.
+     * @param unit
+     *            the TimeUnit of the block timeout.
+     *
+     * @throws IllegalArgumentException
+     *             if capacity is not positive.
+     * @throws NullPointerException
+     *             if tasks, overflowPolicy or unit is <code>null</code>.
+     */
+    public BoundedTaskQueue(BlockingQueue<NamedRunnable> tasks, int capacity,
+            OverflowPolicy overflowPolicy, long blockTimeout, TimeUnit unit) {
+        checkArgument(capacity > 0, "Capacity must be positive.");
+        this.tasks = checkNotNull(tasks, "Task queue is null.");
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+        this.overflowPolicy = checkNotNull(overflowPolicy,
+                "Overflow policy is null.");
+        this.blockTimeoutNanos = checkNotNull(unit, "TimeUnit is null.")
+                .toNanos(blockTimeout);
+    }
+
+    @Override
+    protected BlockingQueue<NamedRunnable> delegate() {
+        return tasks;
+    }
+
+    @Override
+    public boolean offer(NamedRunnable task) {
+        checkNotNull(task);
+        if (permits.tryAcquire()) {
+            return enqueue(task);
+        }
+        return overflow(task, blockTimeoutNanos);
+    }
+
+    @Override
+    public boolean add(NamedRunnable task) {
+        if (offer(task)) {
+            return true;
+        }
+        throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends NamedRunnable> collection) {
+        return standardAddAll(collection);
+    }
+
+    @Override
+    public boolean offer(NamedRunnable task, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkNotNull(task);
+        if (permits.tryAcquire(timeout, unit)) {
+            return enqueue(task);
+        }
+        return overflow(task, 0l);
+    }
+
+    @Override
+    public void put(NamedRunnable task) throws InterruptedException {
+        checkNotNull(task);
+        permits.acquire();
+        if (!enqueue(task)) {
+            throw new IllegalStateException("Task queue refused the task.");
+        }
+    }
+
+    @Override
+    public NamedRunnable poll() {
+        return dequeued(tasks.poll());
+    }
+
+    @Override
+    public NamedRunnable poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return dequeued(tasks.poll(timeout, unit));
+    }
+
+    @Override
+    public NamedRunnable take() throws InterruptedException {
+        return dequeued(tasks.take());
+    }
+
+    @Override
+    public NamedRunnable remove() {
+        return dequeued(tasks.remove());
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        if (tasks.remove(object)) {
+            dequeued((NamedRunnable) object);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> collection) {
+        checkNotNull(collection);
+        return removeIf(collection, true);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> collection) {
+        checkNotNull(collection);
+        return removeIf(collection, false);
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // drain
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super NamedRunnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super NamedRunnable> c, int maxElements) {
+        Collection<NamedRunnable> drained = Lists.newArrayList();
+        int count = tasks.drainTo(drained, maxElements);
+        for (NamedRunnable task : drained) {
+            dequeued(task);
+        }
+        c.addAll(drained);
+        return count;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public Iterator<NamedRunnable> iterator() {
+        return Iterators.unmodifiableIterator(tasks.iterator());
+    }
+
+    @Override
+    public int getSize() {
+        return tasks.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String getOverflowPolicy() {
+        return overflowPolicy.name();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    /**
+     * Removes the queued tasks that are (or, if contained is
+     * <code>false</code>, are not) in a collection, releasing their permits.
+     */
+    private boolean removeIf(Collection<?> collection, boolean contained) {
+        boolean changed = false;
+        for (NamedRunnable task : Lists.newArrayList(tasks)) {
+            if (collection.contains(task) == contained && remove(task)) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Applies the overflow policy to a task offered while the queue is full.
+     */
+    private boolean overflow(NamedRunnable task, long blockNanos) {
+        switch (overflowPolicy) {
+        case BLOCK:
+            try {
+                if (blockNanos > 0
+                        && permits.tryAcquire(blockNanos, TimeUnit.NANOSECONDS)) {
+                    return enqueue(task);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return reject(task);
+
+        case DROP_NEWEST:
+            return shed(task);
+
+        case DROP_OLDEST:
+            NamedRunnable oldest = tasks.poll();
+            if (oldest != null) {
+                // The permit held by the oldest task passes to the new one.
+                unqueued(oldest);
+                shed(oldest);
+                return enqueue(task);
+            } else if (permits.tryAcquire()) {
+                return enqueue(task);
+            }
+            return reject(task);
+
+        case COALESCE:
+            AtomicInteger queued = queuedByName.get(key(task));
+            if (queued != null && queued.get() > 0) {
+                return shed(task);
+            }
+            return reject(task);
+
+        default:
+            return reject(task);
+        }
+    }
+
+    /**
+     * Puts a task on the decorated queue. Callers must hold a permit.
+     */
+    private boolean enqueue(NamedRunnable task) {
+        AtomicInteger queued = null;
+        if (overflowPolicy == OverflowPolicy.COALESCE) {
+            queued = queuedByName.get(key(task));
+            if (queued == null) {
+                AtomicInteger newCount = new AtomicInteger();
+                queued = queuedByName.putIfAbsent(key(task), newCount);
+                if (queued == null) {
+                    queued = newCount;
+                }
+            }
+            queued.incrementAndGet();
+        }
+        if (tasks.offer(task)) {
+            return true;
+        }
+        if (queued != null) {
+            queued.decrementAndGet();
+        }
+        permits.release();
+        return reject(task);
+    }
+
+    /**
+     * Releases the permit held by a task that left the decorated queue.
+     */
+    private NamedRunnable dequeued(NamedRunnable task) {
+        if (task != null) {
+            unqueued(task);
+            permits.release();
+        }
+        return task;
+    }
+
+    private void unqueued(NamedRunnable task) {
+        if (overflowPolicy == OverflowPolicy.COALESCE) {
+            AtomicInteger queued = queuedByName.get(key(task));
+            if (queued != null) {
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    private static String key(NamedRunnable task) {
+        return Strings.nullToEmpty(task.getName());
+    }
+
+    private boolean reject(NamedRunnable task) {
+        rejected.incrementAndGet();
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(String.format("%s rejected; task queue is full.",
+                    task.getName()));
+        }
+        return false;
+    }
+
+    private boolean shed(NamedRunnable task) {
+        shed.incrementAndGet();
+        if (task instanceof Discardable) {
+            ((Discardable) task).discarded();
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(String.format("%s shed (%s).", task.getName(),
+                    overflowPolicy));
+        }
+        return true;
+    }
+}
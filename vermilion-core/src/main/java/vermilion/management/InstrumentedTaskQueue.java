@@ -0,0 +1,160 @@
+package vermilion.management;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import vermilion.core.NamedRunnable;
+import vermilion.core.TaskExecution;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ForwardingBlockingQueue;
+
+/**
+ * Handles state transitions of tasks when they are taken from the task queue.
+ *
+ * <p>
+ * Every task is queued as a {@link TaskExecution}; a task that is not one
+ * already is wrapped in a new one when it is queued, which also stamps the time
+ * it was queued. When a run is taken from the queue, by any of the methods that
+ * remove the head of the queue, it is marked
+ * {@linkplain StateTransition#starting(NamedRunnable) starting} and wrapped so
+ * the rest of its state transitions, and its run time, are recorded when it
+ * runs.
+ * </p>
+ *
+ * <p>
+ * How long each run waited in the queue is recorded in the {@link TaskMetrics},
+ * per task and per priority, as is how late it was queued if it was
+ * {@linkplain TaskExecution#getScheduledTime() due} at a set time.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class InstrumentedTaskQueue extends
+        ForwardingBlockingQueue<NamedRunnable> {
+
+    private final BlockingQueue<NamedRunnable> tasks;
+
+    private final StateTransition stateTransition;
+
+    private final TaskMetrics metrics;
+
+    /**
+     * Construct a new InstrumentedTaskQueue.
+     *
+     * @param tasks
+     *            the queue to decorate.
+     * @param stateTransition
+     *            the StateTransition.
+     * @param metrics
+     *            where latencies are recorded.
+     *
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     */
+    public InstrumentedTaskQueue(BlockingQueue<NamedRunnable> tasks,
+            StateTransition stateTransition, TaskMetrics metrics) {
+        this.tasks = checkNotNull(tasks, "Task queue is null.");
+        this.stateTransition = checkNotNull(stateTransition,
+                "State transition is null.");
+        this.metrics = checkNotNull(metrics, "Task metrics is null.");
+    }
+
+    @Override
+    protected BlockingQueue<NamedRunnable> delegate() {
+        return tasks;
+    }
+
+    @Override
+    public boolean offer(NamedRunnable task) {
+        return tasks.offer(queued(task));
+    }
+
+    @Override
+    public boolean offer(NamedRunnable task, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return tasks.offer(queued(task), timeout, unit);
+    }
+
+    @Override
+    public void put(NamedRunnable task) throws InterruptedException {
+        tasks.put(queued(task));
+    }
+
+    @Override
+    public boolean add(NamedRunnable task) {
+        return tasks.add(queued(task));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends NamedRunnable> collection) {
+        return standardAddAll(collection);
+    }
+
+    @Override
+    public NamedRunnable poll() {
+        return starting(tasks.poll());
+    }
+
+    @Override
+    public NamedRunnable poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return starting(tasks.poll(timeout, unit));
+    }
+
+    @Override
+    public NamedRunnable take() throws InterruptedException {
+        return starting(tasks.take());
+    }
+
+    @Override
+    public NamedRunnable remove() {
+        return starting(tasks.remove());
+    }
+
+    @Override
+    public int drainTo(Collection<? super NamedRunnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super NamedRunnable> c, int maxElements) {
+        List<NamedRunnable> drained = Lists.newArrayList();
+        int count = tasks.drainTo(drained, maxElements);
+        for (NamedRunnable task : drained) {
+            c.add(starting(task));
+        }
+        return count;
+    }
+
+    private static NamedRunnable queued(NamedRunnable task) {
+        checkNotNull(task);
+        return task instanceof TaskExecution ? task : new TaskExecution(task);
+    }
+
+    /**
+     * Records the queue wait and lateness of a run, marks it as starting and
+     * wraps it so its remaining state transitions are recorded when it runs.
+     */
+    private NamedRunnable starting(NamedRunnable task) {
+        if (task == null) {
+            return null;
+        }
+        TaskExecution execution = task instanceof TaskExecution ? (TaskExecution) task
+                : new TaskExecution(task);
+        metrics.recordQueueWait(execution.getName(), execution.getPriority(),
+                System.nanoTime() - execution.getQueuedNanos());
+        if (execution.getScheduledTime() > 0) {
+            metrics.recordLateness(execution.getName(), TimeUnit.MILLISECONDS
+                    .toNanos(execution.getQueuedTime()
+                            - execution.getScheduledTime()));
+        }
+        stateTransition.starting(execution);
+        return new StatefulNamedRunnable(execution, stateTransition, metrics);
+    }
+}
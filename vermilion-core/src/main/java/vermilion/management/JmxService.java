@@ -1,7 +1,10 @@
 package vermilion.management;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.lang.management.ManagementFactory;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -20,11 +23,13 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import vermilion.core.Listeners;
 import vermilion.core.NamedRunnable;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractService;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -55,10 +60,15 @@ public class JmxService extends AbstractService {
 
     private final StateTransition stateTransition;
 
+    private volatile TaskControllerImpl taskController;
+
     private MBeanServer mbs;
 
     private final List<ObjectInstance> objectInstances;
 
+    private final Map<String, StandardMBean> additionalMXBeans = Maps
+            .newLinkedHashMap();
+
     /**
      * Constructs a new JmxService instance.
      * 
@@ -76,6 +86,45 @@ public class JmxService extends AbstractService {
 
     }
 
+    /**
+     * Constructs a new JmxService instance that registers the given
+     * TaskController.
+     * 
+     * <p>
+     * Use this constructor when the TaskController is also used in-process,
+     * for example by the web API, so that both control the same tasks.
+     * </p>
+     * 
+     * @param taskController
+     *            the TaskController to register.
+     * 
+     * @throws NullPointerException
+     *             if taskController is <code>null</code>.
+     */
+    public JmxService(TaskControllerImpl taskController) {
+        this.taskQueue = null;
+        this.stateTransition = null;
+        this.taskController = checkNotNull(taskController,
+                "Task controller is null.");
+        objectInstances = Lists.newArrayList();
+    }
+
+    /**
+     * Registers an additional MXBean when this service starts.
+     * 
+     * @param mxbean
+     *            the MXBean implementation.
+     * @param mxbeanInterface
+     *            the MXBean interface the implementation exports.
+     * @param objectName
+     *            the object name to register the MXBean with.
+     */
+    public <T> void addMXBean(T mxbean, Class<T> mxbeanInterface,
+            String objectName) {
+        additionalMXBeans.put(objectName, new StandardMBean(mxbean,
+                mxbeanInterface, true));
+    }
+
     @Override
     protected void doStart() {
         internalExecutor = Executors.newSingleThreadExecutor();
@@ -90,12 +139,21 @@ public class JmxService extends AbstractService {
                 lock.lock();
                 try {
                     mbs = ManagementFactory.getPlatformMBeanServer();
-                    TaskControllerImpl taskController = new TaskControllerImpl(
-                            TaskController.class, taskQueue, stateTransition);
+                    if (taskController == null) {
+                        taskController = new TaskControllerImpl(
+                                TaskController.class, taskQueue,
+                                stateTransition);
+                    }
                     ObjectName serviceFactoryBeanName = new ObjectName(
                             TaskController.OBJECT_NAME);
                     objectInstances.add(mbs.registerMBean(taskController,
                             serviceFactoryBeanName));
+                    for (Map.Entry<String, StandardMBean> mxbean : additionalMXBeans
+                            .entrySet()) {
+                        objectInstances.add(mbs.registerMBean(
+                                mxbean.getValue(),
+                                new ObjectName(mxbean.getKey())));
+                    }
                     notifyStarted();
                 } catch (MalformedObjectNameException
                         | NotCompliantMBeanException
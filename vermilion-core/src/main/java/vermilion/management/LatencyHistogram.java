@@ -0,0 +1,147 @@
+package vermilion.management;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of latencies in nanoseconds.
+ *
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split into 8
+ * buckets of equal width, so a percentile read from the histogram is within
+ * 12.5% of the recorded value. Values from 0 up to 2<sup>45</sup> nanoseconds
+ * (about 9.7 hours) are bucketed; larger values are counted in the last bucket
+ * but still update the maximum. A histogram holds 352 counters however many
+ * values are recorded.
+ * </p>
+ *
+ * <p>
+ * A {@linkplain #snapshot(String, boolean) snapshot} that resets the
+ * histogram counts every value in exactly one snapshot, but a snapshot taken
+ * while values are being recorded may not reflect all of them in its buckets,
+ * total and maximum alike.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 45;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+            * SUB_BUCKETS;
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS
+            .toNanos(1l);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a latency. Negative values are recorded as 0.
+     *
+     * @param nanos
+     *            the latency in nanoseconds.
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0l);
+        counts.incrementAndGet(index(value));
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Summarizes the recorded latencies.
+     *
+     * @param taskName
+     *            the name of the task the latencies are of.
+     * @param reset
+     *            if <code>true</code>, the histogram is emptied as it is read.
+     * @return the summary.
+     */
+    LatencyStatistics snapshot(String taskName, boolean reset) {
+        long[] buckets = new long[BUCKETS];
+        long n = 0l;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = reset ? counts.getAndSet(i, 0l) : counts.get(i);
+            n += buckets[i];
+        }
+        long total = reset ? totalNanos.getAndSet(0l) : totalNanos.get();
+        long max = reset ? maxNanos.getAndSet(0l) : maxNanos.get();
+
+        return new LatencyStatistics(taskName, n, n == 0 ? 0d : total
+                / NANOS_PER_MILLI / n, percentile(buckets, n, 0.5d, max),
+                percentile(buckets, n, 0.9d, max), percentile(buckets, n,
+                        0.99d, max), percentile(buckets, n, 0.999d, max), max
+                        / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Empties the histogram in place. As with a snapshot, a value recorded
+     * while it is being emptied may be kept in its bucket but not in the total
+     * or maximum, or the other way round.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0l);
+        }
+        totalNanos.set(0l);
+        maxNanos.set(0l);
+    }
+
+    /**
+     * Finds the bucket holding the given percentile and returns its midpoint
+     * in milliseconds, but no more than the maximum.
+     */
+    private static double percentile(long[] buckets, long n, double quantile,
+            long max) {
+        if (n == 0) {
+            return 0d;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0l;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                long lower = lowerBound(i);
+                long midpoint = lower + (lowerBound(i + 1) - lower) / 2;
+                return Math.min(midpoint, max) / NANOS_PER_MILLI;
+            }
+        }
+        return max / NANOS_PER_MILLI;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+                & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,91 @@
+package vermilion.management;
+
+/**
+ * A summary of the latencies recorded for a named task.
+ *
+ * @author andy
+ *
+ */
+public class LatencyStatistics {
+
+    private final String taskName;
+
+    private final long count;
+
+    private final double meanMillis;
+
+    private final double p50Millis;
+
+    private final double p90Millis;
+
+    private final double p99Millis;
+
+    private final double p999Millis;
+
+    private final double maxMillis;
+
+    /**
+     * Constructs a new LatencyStatistics.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param count
+     *            the number of latencies recorded.
+     * @param meanMillis
+     *            the mean latency in milliseconds.
+     * @param p50Millis
+     *            the median latency in milliseconds.
+     * @param p90Millis
+     *            the 90th percentile latency in milliseconds.
+     * @param p99Millis
+     *            the 99th percentile latency in milliseconds.
+     * @param p999Millis
+     *            the 99.9th percentile latency in milliseconds.
+     * @param maxMillis
+     *            the largest latency in milliseconds.
+     */
+    public LatencyStatistics(String taskName, long count, double meanMillis,
+            double p50Millis, double p90Millis, double p99Millis,
+            double p999Millis, double maxMillis) {
+        this.taskName = taskName;
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.p999Millis = p999Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getP999Millis() {
+        return p999Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+}
@@ -0,0 +1,41 @@
+package vermilion.management;
+
+/**
+ * What a {@link BoundedTaskQueue} does with a task that is offered while the
+ * queue is full.
+ *
+ * @author andy
+ *
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for space until a deadline, then reject the task. Only callers that
+     * may block wait: runs offered by the scheduler, from the shared timer
+     * thread, are rejected at once.
+     */
+    BLOCK,
+
+    /**
+     * Accept the task but discard it; the queue is unchanged.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the task at the head of the queue to make room for the offered
+     * task. This is the oldest task only on a FIFO queue, so it is not allowed
+     * on priority or deadline queues, where the head is the most urgent task.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Merge the task into an already queued run of the same (named) task if
+     * there is one, otherwise reject it.
+     */
+    COALESCE,
+
+    /**
+     * Reject the task; the caller is told it was not queued.
+     */
+    REJECT;
+}
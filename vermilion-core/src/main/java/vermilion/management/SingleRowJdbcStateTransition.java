@@ -0,0 +1,242 @@
+package vermilion.management;
+
+import static vermilion.management.PooledDataSource.ConnectionPoolType.TOMCAT_JDBC;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import vermilion.core.NamedRunnable;
+import vermilion.core.NamedRunnable.NamedRunnableState;
+
+/**
+ * StateTransition that records each task execution as a single database row.
+ *
+ * <p>
+ * Transitions are kept in memory while a task runs. When it has
+ * {@linkplain #stopped(NamedRunnable) stopped}, one {@code task_execution} row
+ * holding its start and end times, final state and duration is inserted. This
+ * is one write per execution where {@link JdbcStateTransition} makes six. It
+ * needs the table created by {@code vermilion-execution-schema-hsqldb.sql};
+ * {@code vermilion-execution-migration-hsqldb.sql} migrates a database created
+ * for {@link JdbcStateTransition}.
+ * </p>
+ *
+ * <p>
+ * An execution that never stops is not recorded. At most 65536 executions that
+ * have not stopped are kept; beyond that the oldest is forgotten and is not
+ * recorded when it stops. The execution ids given to tasks are assigned in
+ * memory when a run is starting and are not the ids of the
+ * {@code task_execution} rows.
+ * </p>
+ *
+ * <p>
+ * <strong>Implementation note</strong>: A (static) JDK logger
+ * {@linkplain Class#getName() named} for this class logs errors at
+ * {@linkplain Level.WARNING}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class SingleRowJdbcStateTransition implements StateTransition {
+
+    private static final Logger logger = Logger
+            .getLogger(SingleRowJdbcStateTransition.class.getName());
+
+    private static final String INSERT_TASK_EXECUTION_SQL = "INSERT INTO "
+            + "task_execution (task_name, created_time, start_time, end_time, "
+            + "exec_status, duration_ms) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Most runs remembered while waiting for the run to stop.
+     */
+    private static final int MAX_OPEN_EXECUTIONS = 65536;
+
+    private final DataSource dataSource;
+
+    private final SequenceGenerator executionIdSeq = new SequenceGenerator();
+
+    /**
+     * Runs that are starting but have not stopped, keyed by execution id. The
+     * eldest is forgotten once there are too many, so runs that never stop
+     * don't leak.
+     */
+    private final Map<Integer, Execution> executions = Collections
+            .synchronizedMap(new LinkedHashMap<Integer, Execution>() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Integer, Execution> eldest) {
+                    return size() > MAX_OPEN_EXECUTIONS;
+                }
+            });
+
+    @Inject
+    public SingleRowJdbcStateTransition(
+            @PooledDataSource(TOMCAT_JDBC) Provider<DataSource> dataSourceProvider) {
+        this.dataSource = dataSourceProvider.get();
+    }
+
+    @Override
+    public void abandonded(NamedRunnable task) {
+        finished(task, NamedRunnableState.ABANDONED);
+    }
+
+    @Override
+    public void completed(NamedRunnable task) {
+        finished(task, NamedRunnableState.COMPLETED);
+    }
+
+    @Override
+    public void failed(NamedRunnable task) {
+        finished(task, NamedRunnableState.FAILED);
+    }
+
+    @Override
+    public void starting(NamedRunnable task) {
+        Integer executionId = executionIdSeq.next();
+        task.setExecutionId(executionId);
+        executions.put(executionId, new Execution(System.currentTimeMillis()));
+        task.setState(NamedRunnableState.STARTING);
+    }
+
+    @Override
+    public void started(NamedRunnable task) {
+        Execution execution = execution(task);
+        if (execution != null) {
+            execution.startTime = System.currentTimeMillis();
+        }
+        task.setState(NamedRunnableState.STARTED);
+    }
+
+    @Override
+    public void stopping(NamedRunnable task) {
+        task.setState(NamedRunnableState.STOPPING);
+    }
+
+    @Override
+    public void stopped(NamedRunnable task) {
+        task.setState(NamedRunnableState.STOPPED);
+        Integer executionId = task.getExecutionId();
+        Execution execution = executionId == null ? null : executions
+                .remove(executionId);
+        if (execution == null) {
+            logger.warning(String.format(
+                    "%s: %s stopped but was never starting. Execution will not be recorded.",
+                    task.getName(), executionId));
+            return;
+        }
+        insert(task.getName(), execution, System.currentTimeMillis());
+    }
+
+    private Execution execution(NamedRunnable task) {
+        Integer executionId = task.getExecutionId();
+        return executionId == null ? null : executions.get(executionId);
+    }
+
+    private void finished(NamedRunnable task, NamedRunnableState state) {
+        Execution execution = execution(task);
+        if (execution != null) {
+            execution.finalState = state;
+        }
+        task.setState(state);
+    }
+
+    private void insert(String taskName, Execution execution, long endTime) {
+        Connection conn = null;
+        PreparedStatement taskExecutionPs = null;
+
+        try {
+            conn = dataSource.getConnection();
+            taskExecutionPs = conn.prepareStatement(INSERT_TASK_EXECUTION_SQL);
+            taskExecutionPs.setString(1, taskName);
+            taskExecutionPs.setTimestamp(2,
+                    new Timestamp(execution.createdTime));
+            if (execution.startTime > 0) {
+                taskExecutionPs.setTimestamp(3, new Timestamp(
+                        execution.startTime));
+                taskExecutionPs.setLong(6, endTime - execution.startTime);
+            } else {
+                taskExecutionPs.setNull(3, Types.TIMESTAMP);
+                taskExecutionPs.setNull(6, Types.BIGINT);
+            }
+            taskExecutionPs.setTimestamp(4, new Timestamp(endTime));
+            if (execution.finalState != null) {
+                taskExecutionPs.setString(5, execution.finalState.name());
+            } else {
+                taskExecutionPs.setNull(5, Types.VARCHAR);
+            }
+
+            int affectedRows = taskExecutionPs.executeUpdate();
+            if (affectedRows == 0) {
+                logger.warning("Task execution was not saved to the database.");
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to record task execution in the database.");
+            record.setThrown(e);
+            logger.log(record);
+        } finally {
+            closeQuietly(taskExecutionPs);
+            closeQuietly(conn);
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        try {
+            if (conn != null && !conn.isClosed()) {
+                conn.close();
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to release database resources.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    private void closeQuietly(Statement stmt) {
+        try {
+            if (stmt != null && !stmt.isClosed()) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Unable to release database resources.");
+            record.setThrown(e);
+            logger.log(record);
+        }
+    }
+
+    /**
+     * What is known about an execution that has not stopped.
+     */
+    private static final class Execution {
+
+        private final long createdTime;
+
+        private volatile long startTime;
+
+        private volatile NamedRunnableState finalState;
+
+        private Execution(long createdTime) {
+            this.createdTime = createdTime;
+        }
+    }
+}
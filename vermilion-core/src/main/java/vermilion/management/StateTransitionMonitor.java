@@ -0,0 +1,62 @@
+package vermilion.management;
+
+import javax.management.MXBean;
+
+/**
+ * MXBean type for monitoring a write-behind {@link StateTransition} via JMX.
+ *
+ * @author andy
+ *
+ */
+@MXBean
+public interface StateTransitionMonitor {
+
+    /**
+     * The object name used to register instances of StateTransitionMonitor.
+     */
+    public static final String OBJECT_NAME = String.format("%s:type=%s",
+            StateTransitionMonitor.class.getPackage().getName(),
+            StateTransitionMonitor.class.getSimpleName());
+
+    /**
+     * @return the number of transitions waiting to be written.
+     */
+    public int getPendingCount();
+
+    /**
+     * @return the maximum number of transitions waiting to be written.
+     */
+    public int getCapacity();
+
+    /**
+     * @return the number of transitions that were not recorded because the
+     *         buffer was full.
+     */
+    public long getDroppedCount();
+
+    /**
+     * @return the number of transitions written to the database.
+     */
+    public long getWrittenCount();
+
+    /**
+     * @return the number of transitions that could not be written to the
+     *         database.
+     */
+    public long getFailedCount();
+
+    /**
+     * @return the number of flushes to the database.
+     */
+    public long getFlushCount();
+
+    /**
+     * @return the number of milliseconds the last flush took.
+     */
+    public long getLastFlushMillis();
+
+    /**
+     * @return the total number of milliseconds spent flushing.
+     */
+    public long getTotalFlushMillis();
+}
@@ -1,24 +1,29 @@
 package vermilion.management;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-
+import vermilion.core.MonotonicClock;
 import vermilion.core.NamedRunnable;
-import vermilion.core.NamedRunnable.NamedRunnableState;
+import vermilion.core.TaskExecution;
+
+import com.google.common.base.Throwables;
 
 /**
  * Wraps the {@link NamedRunnable#run() run} method by executing calls to a
- * {@link StateTransition} instance.
+ * {@link StateTransition} instance. How long each run took, and whether a
+ * {@link TaskExecution} finished after its deadline, are recorded in
+ * {@link TaskMetrics}. Every other method is delegated to the wrapped
+ * NamedRunnable.
  * 
  * @author andy
  * 
  */
-class StatefulNamedRunnable implements InvocationHandler {
+class StatefulNamedRunnable implements NamedRunnable {
 
     private final NamedRunnable task;
 
     private final StateTransition stateTransition;
 
+    private final TaskMetrics metrics;
+
     /**
      * Constructs a new instance of this class.
      * 
@@ -26,64 +31,84 @@ class StatefulNamedRunnable implements InvocationHandler {
      *            the NamedRunnable to wrap.
      * @param stateTransition
      *            the StateTransition instance.
+     * @param metrics
+     *            where the run time is recorded.
      */
     public StatefulNamedRunnable(NamedRunnable task,
-            StateTransition stateTransition) {
+            StateTransition stateTransition, TaskMetrics metrics) {
         super();
         this.task = task;
         this.stateTransition = stateTransition;
+        this.metrics = metrics;
     }
 
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args)
-            throws Throwable {
-
-        Class<?> voidReturnType = method.getReturnType();
-        if ("run".equals(method.getName())) {
-            Throwable caught = null;
-            stateTransition.started(task);
-            try {
-                task.run();
-            } catch (Throwable t) {
-                caught = t;
-            } finally {
-                stateTransition.stopping(task);
-                if (caught != null) {
-                    if (caught instanceof InterruptedException) {
-                        stateTransition.abandonded(task);
-                    } else {
-                        stateTransition.failed(task);
-                    }
-                } else {
-                    stateTransition.completed(task);
+    public void run() {
+        Throwable caught = null;
+        stateTransition.started(task);
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            caught = t;
+        } finally {
+            metrics.recordRunTime(task.getName(), System.nanoTime() - start);
+            if (task instanceof TaskExecution) {
+                long deadline = ((TaskExecution) task).getDeadline();
+                if (deadline > 0
+                        && MonotonicClock.currentTimeMillis() > deadline) {
+                    metrics.recordDeadlineMiss(task.getName());
                 }
-                stateTransition.stopped(task);
-                if (caught != null) {
-                    throw caught;
+            }
+            stateTransition.stopping(task);
+            if (caught != null) {
+                if (caught instanceof InterruptedException) {
+                    stateTransition.abandonded(task);
+                } else {
+                    stateTransition.failed(task);
                 }
+            } else {
+                stateTransition.completed(task);
             }
-            return voidReturnType;
-        } else if ("getName".equals(method.getName())) {
-            return task.getName();
-        } else if ("getExecutionId".equals(method.getName())) {
-            return task.getExecutionId();
-        } else if ("setName".equals(method.getName())) {
-            String taskname = (String) args[0];
-            task.setName(taskname);
-            return voidReturnType;
-        } else if ("setExecutionId".equals(method.getName())) {
-            Integer execId = (Integer) args[0];
-            task.setExecutionId(execId);
-            return voidReturnType;
-        } else if ("getState".equals(method.getName())) {
-            return task.getState();
-        } else if ("setState".equals(method.getName())) {
-            NamedRunnableState state = (NamedRunnableState) args[0];
-            task.setState(state);
-            return voidReturnType;
-        } else {
-            return method.invoke(proxy, args);
+            stateTransition.stopped(task);
         }
+        if (caught != null) {
+            throw Throwables.propagate(caught);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return task.getName();
+    }
+
+    @Override
+    public void setName(String name) {
+        task.setName(name);
+    }
+
+    @Override
+    public Integer getExecutionId() {
+        return task.getExecutionId();
+    }
+
+    @Override
+    public void setExecutionId(Integer executionId) {
+        task.setExecutionId(executionId);
+    }
 
+    @Override
+    public NamedRunnableState getState() {
+        return task.getState();
+    }
+
+    @Override
+    public void setState(NamedRunnableState state) {
+        task.setState(state);
+    }
+
+    @Override
+    public String toString() {
+        return task.toString();
     }
 }
@@ -1,5 +1,6 @@
 package vermilion.management;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import javax.management.MXBean;
@@ -37,12 +38,99 @@ public interface TaskController {
      * @param timeunit
      *            time units for the execution interval. Value must be one of
      *            the values of TimeUnit.
-     * @return an Integer that can be used to identify this task.
+     * @return an Integer that can be used to identify this task, or
+     *         {@link Integer#MIN_VALUE} if a task with the same name is
+     *         already started or the task did not start.
      * @see TimeUnit
      */
     public Integer startTask(String taskName, String taskClassname,
             Long initialDelay, Long interval, String timeunit);
 
+    /**
+     * Instantiates and starts a Scheduled task with execution options.
+     * 
+     * <p>
+     * The option names are the task property names used in
+     * {@code tasks.properties} without the task name prefix, for example
+     * {@code execution.singleFlight}. With the {@code execution.cron} option
+     * the task runs at the times given by a cron expression, and the initial
+     * delay, interval and time unit are ignored. Execution properties without
+     * a task name prefix in {@code tasks.properties} are defaults for the
+     * options that are not given.
+     * </p>
+     * 
+     * @param taskName
+     *            name of the task.
+     * @param taskClassname
+     *            class name of the NamedRunnable implementation.
+     * @param initialDelay
+     *            number of time units to wait before the first execution.
+     * @param interval
+     *            execution interval.
+     * @param timeunit
+     *            time units for the execution interval. Value must be one of
+     *            the values of TimeUnit.
+     * @param options
+     *            execution options keyed by name.
+     * @return an Integer that can be used to identify this task, or
+     *         {@link Integer#MIN_VALUE} if a task with the same name is
+     *         already started or the task did not start.
+     * @see TimeUnit
+     */
+    public Integer startTask(String taskName, String taskClassname,
+            Long initialDelay, Long interval, String timeunit,
+            Map<String, String> options);
+
+    /**
+     * Instantiates and starts many Scheduled tasks at once.
+     * 
+     * <p>
+     * The execution defaults of {@code tasks.properties} apply to each
+     * definition as they do to a single task. Each definition is validated on
+     * its own. A definition that is invalid, names a task that is already
+     * started or is named more than once, or whose class can't be instantiated
+     * does not stop the others from being started.
+     * </p>
+     * 
+     * @param definitions
+     *            the tasks to start.
+     * @return a result for each definition, in the same order, holding either
+     *         the id of the started task or why it was not started.
+     */
+    public TaskStartResult[] startTasks(TaskDefinition[] definitions);
+
+    /**
+     * Replaces the Schedule of a started task without stopping it.
+     * 
+     * <p>
+     * The task keeps its id, its counts and any run that is queued or running.
+     * Only the options that shape the Schedule, {@code execution.cron} and
+     * {@code execution.stagger}, are used; the others are fixed when the task
+     * is started. As when a task is started, the execution defaults of
+     * {@code tasks.properties} apply to the options that are not given.
+     * </p>
+     * 
+     * @param taskId
+     *            the id of the task.
+     * @param initialDelay
+     *            number of time units to wait before the first execution of
+     *            the new Schedule, or <code>null</code> for none.
+     * @param interval
+     *            execution interval.
+     * @param timeunit
+     *            time units for the execution interval. Value must be one of
+     *            the values of TimeUnit.
+     * @param options
+     *            execution options keyed by name, or <code>null</code> for
+     *            none.
+     * @return <code>true</code> if the task was rescheduled,
+     *         <code>false</code> if there is no task with the id.
+     * @throws IllegalArgumentException
+     *             if a Schedule can't be created from the parameters.
+     */
+    public Boolean reschedule(Integer taskId, Long initialDelay,
+            Long interval, String timeunit, Map<String, String> options);
+
     /**
      * Removes the named task.
      * 
@@ -79,6 +167,36 @@ public interface TaskController {
      */
     public void queueImmediately(String taskName);
 
+    /**
+     * Returns the number of runs of the named task that were merged into a
+     * run already waiting, or {@code null} if there is no such task.
+     * 
+     * <p>
+     * Runs are only merged for tasks started with the
+     * {@code execution.singleFlight} option, into the run waiting for the
+     * running one, or with the {@code execution.maxParallelism} option, into
+     * the run held back by the parallelism limit.
+     * </p>
+     * 
+     * @param taskName
+     *            the name of the task.
+     */
+    public Long coalescedTriggers(String taskName);
+
+    /**
+     * Returns the number of missed runs of the named task that were not queued
+     * because of its misfire policy, or {@code null} if there is no such task.
+     * 
+     * <p>
+     * The misfire policy is set with the {@code execution.misfirePolicy}
+     * option.
+     * </p>
+     * 
+     * @param taskName
+     *            the name of the task.
+     */
+    public Long collapsedFires(String taskName);
+
     /**
      * Returns an n by 2 array of Objects.
      * 
@@ -1,15 +1,19 @@
 package vermilion.management;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.lang.reflect.Proxy;
-import java.net.URL;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -22,14 +26,22 @@ import javax.management.MBeanParameterInfo;
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
+import vermilion.core.LazyNamedRunnable;
 import vermilion.core.Listeners;
+import vermilion.core.MisfirePolicy;
 import vermilion.core.NamedRunnable;
 import vermilion.core.Schedule;
 import vermilion.core.ScheduledQueuingService;
 import vermilion.core.Schedules;
+import vermilion.core.Stagger;
+import vermilion.core.Timers;
+import vermilion.management.TaskRegistry.Registration;
 
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
@@ -77,6 +89,25 @@ import com.google.common.util.concurrent.Service.State;
  * </p>
  * 
  * <p>
+ * A task can also set execution options:
+ * 
+ * <pre>
+ * SimpleTask.execution.singleFlight = true
+ * </pre>
+ * 
+ * The {@code execution.singleFlight} property, if {@code true}, keeps at most
+ * one run of the task queued and at most one running; runs that come due in
+ * the meantime are merged into the waiting run.
+ * </p>
+ * 
+ * <p>
+ * A task runs in the default worker pool unless its {@code execution.pool}
+ * property names one of the {@linkplain WorkerPools worker pools}. Its
+ * {@code execution.maxParallelism} property limits how many of its runs are
+ * queued or running at once.
+ * </p>
+ * 
+ * <p>
  * Instances of this class have a reference to the shared task queue used by the
  * Service instances in this package. The queue can be managed by an instance of
  * this class.
@@ -99,16 +130,31 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
     private static final Logger logger = Logger
             .getLogger(TaskControllerImpl.class.getSimpleName());
 
-    private final BlockingQueue<NamedRunnable> taskQueue;
+    private final WorkerPools pools;
 
     private final StateTransition stateTransition;
 
-    private final ConcurrentMap<String, ScheduledQueuingService> services;
+    private final TaskRegistry registry = new TaskRegistry();
+
+    private static final String SINGLE_FLIGHT_OPTION = "execution.singleFlight";
 
-    private final ConcurrentMap<Integer, String> idServices = Maps
-            .newConcurrentMap();
+    private static final String CRON_OPTION = "execution.cron";
 
-    private final SequenceGenerator serviceIdSeq = new SequenceGenerator();
+    private static final String MISFIRE_POLICY_OPTION = "execution.misfirePolicy";
+
+    private static final String STAGGER_OPTION = "execution.stagger";
+
+    private static final String PRIORITY_OPTION = "execution.priority";
+
+    private static final String OPTION_PREFIX = "execution.";
+
+    private static final String LAZY_OPTION = "execution.lazy";
+
+    private static final String RELEASE_OPTION = "execution.release";
+
+    private static final String POOL_OPTION = "execution.pool";
+
+    private static final String MAX_PARALLELISM_OPTION = "execution.maxParallelism";
 
     /**
      * Constructs a new ServiceFactoryImpl.
@@ -246,9 +292,9 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
             ConcurrentMap<String, ScheduledQueuingService> tasks,
             boolean autoStart) {
         super(mbeanInterface, isMXBean);
-        this.taskQueue = taskQueue;
+        this.pools = new WorkerPools(taskQueue, null);
         this.stateTransition = stateTransition;
-        this.services = tasks;
+        registerAll(tasks);
         if (autoStart) {
             autoStart();
         }
@@ -289,58 +335,129 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
             ConcurrentMap<String, ScheduledQueuingService> tasks,
             boolean autoStart) {
         super(implementation, mbeanInterface, isMXBean);
-        this.taskQueue = taskQueue;
+        this.pools = new WorkerPools(taskQueue, null);
         this.stateTransition = stateTransition;
-        this.services = tasks;
+        registerAll(tasks);
 
         if (autoStart) {
             autoStart();
         }
     }
 
+    /**
+     * Constructs a new ServiceFactoryImpl whose tasks run in the given worker
+     * pools.
+     * 
+     * <p>
+     * If the {@code tasks.properties} file is found at the top of the
+     * classpath, it is loaded and the defined tasks are registered, scheduled,
+     * and started.
+     * </p>
+     * 
+     * @param mbeanInterface
+     *            the exported management interface.
+     * @param isMXBean
+     *            flag indicating if this instance is an MXBean.
+     * @param pools
+     *            the worker pools; a task is queued to the pool named by its
+     *            {@code execution.pool} option, or to the default pool.
+     * @param stateTransition
+     *            the StateTransition for the tasks.
+     */
+    public TaskControllerImpl(Class<?> mbeanInterface, boolean isMXBean,
+            WorkerPools pools, StateTransition stateTransition) {
+        super(mbeanInterface, isMXBean);
+        this.pools = checkNotNull(pools, "Worker pools can't be null.");
+        this.stateTransition = stateTransition;
+        autoStart();
+    }
+
+    private void registerAll(Map<String, ScheduledQueuingService> tasks) {
+        for (Map.Entry<String, ScheduledQueuingService> task : tasks
+                .entrySet()) {
+            registry.register(task.getKey(), task.getValue());
+        }
+    }
+
     private void autoStart() {
-        Properties tasks = loadTaskProperties();
-        if (tasks.size() > 0) {
+        Properties tasks = TaskProperties.load();
+        if (!Strings.isNullOrEmpty(tasks.getProperty("tasks"))) {
             List<String> taskNames = Lists.newArrayList(tasks.getProperty(
                     "tasks").split(",\\s*"));
+            TaskDefinition[] definitions = new TaskDefinition[taskNames.size()];
+            int i = 0;
             for (String taskName : taskNames) {
                 String taskClassname = tasks.getProperty(String.format(
                         "%s.runnable", taskName));
-                Long initialDelay = Long.valueOf(tasks.getProperty(
+                Long initialDelay = parseLong(tasks.getProperty(
                         String.format("%s.execution.initialDelay", taskName),
                         "0"));
-                Long interval = Long.valueOf(tasks.getProperty(String.format(
+                Long interval = parseLong(tasks.getProperty(String.format(
                         "%s.execution.interval", taskName)));
                 String timeunit = tasks.getProperty(String.format(
                         "%s.execution.timeunit", taskName));
-                startTask(taskName, taskClassname, initialDelay, interval,
-                        timeunit);
+                definitions[i++] = new TaskDefinition(taskName, taskClassname,
+                        initialDelay, interval, timeunit, taskOptions(tasks,
+                                taskName));
+            }
+            for (TaskStartResult result : startTasks(definitions)) {
+                if (result.getError() != null) {
+                    logger.warning(String.format("%s not started: %s",
+                            result.getTaskName(), result.getError()));
+                }
             }
         } else {
             logger.fine("No tasks specified for automatic start. Skipping.");
         }
     }
 
-    private Properties loadTaskProperties() {
-        Properties tasks = new Properties();
-        URL tasksPropertiesFile = getClass().getResource("/tasks.properties");
-        if (tasksPropertiesFile != null) {
-
-            try (InputStream tasksIn = tasksPropertiesFile.openStream()) {
-
-                tasks.load(tasksIn);
+    private static Long parseLong(String value) {
+        try {
+            return value == null ? null : Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-            } catch (IOException e) {
-                LogRecord record = new LogRecord(Level.CONFIG,
-                        "NON-FATAL: Could not load tasks.properties file.");
-                record.setThrown(e);
-                logger.log(record);
+    /**
+     * Collects the properties of the named task, keyed by name without the
+     * task name prefix.
+     */
+    private Map<String, String> taskOptions(Properties tasks, String taskName) {
+        Map<String, String> options = Maps.newHashMap();
+        String prefix = taskName + ".";
+        for (String propertyName : tasks.stringPropertyNames()) {
+            if (propertyName.startsWith(prefix)) {
+                options.put(propertyName.substring(prefix.length()),
+                        tasks.getProperty(propertyName));
             }
+        }
+        return options;
+    }
 
-        } else {
-            logger.config("tasks.properties not found.");
+    /**
+     * Returns the options of a task over the execution defaults: execution
+     * properties without a task name prefix in {@code tasks.properties}, such
+     * as {@code execution.stagger}, apply to every task that does not set
+     * them.
+     * 
+     * @param tasks
+     *            the task properties.
+     * @param options
+     *            the options of the task, or <code>null</code> for none.
+     */
+    private static Map<String, String> withDefaults(Properties tasks,
+            Map<String, String> options) {
+        Map<String, String> merged = Maps.newHashMap();
+        for (String propertyName : tasks.stringPropertyNames()) {
+            if (propertyName.startsWith(OPTION_PREFIX)) {
+                merged.put(propertyName, tasks.getProperty(propertyName));
+            }
         }
-        return tasks;
+        if (options != null) {
+            merged.putAll(options);
+        }
+        return merged;
     }
 
     /**
@@ -349,23 +466,38 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
     @Override
     public Integer startTask(String taskName, String taskClassname,
             Long initialDelay, Long interval, String timeunit) {
+        return startTask(taskName, taskClassname, initialDelay, interval,
+                timeunit, Collections.<String, String> emptyMap());
+    }
 
-        NamedRunnable task = loadRunnable(taskClassname);
-        task.setName(taskName);
-        Schedule schedule = Schedules.createSchedule(initialDelay, interval,
-                TimeUnit.valueOf(timeunit.toUpperCase()));
-        ScheduledQueuingService sqs = new ScheduledQueuingService(schedule,
-                task, taskQueue);
-        sqs.addListener(Listeners.createLoggingServiceListener(taskName),
-                MoreExecutors.sameThreadExecutor());
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Integer startTask(String taskName, String taskClassname,
+            Long initialDelay, Long interval, String timeunit,
+            Map<String, String> options) {
+
+        if (registry.get(taskName) != null) {
+            logAlreadyStarted(taskName);
+            return Integer.MIN_VALUE;
+        }
+        ScheduledQueuingService sqs = createService(taskName, taskClassname,
+                initialDelay, interval, timeunit, withDefaults(
+                        TaskProperties.load(), options));
+        // Registered before it starts, so a task started twice at once never
+        // runs under the name it lost.
+        Registration registration = registry.register(taskName, sqs);
+        if (registration == null) {
+            logAlreadyStarted(taskName);
+            return Integer.MIN_VALUE;
+        }
         Future<State> serviceStarted = sqs.start();
 
         Integer id = Integer.MIN_VALUE;
         try {
             if (serviceStarted.get() == State.RUNNING) {
-                services.put(taskName, sqs);
-                id = serviceIdSeq.next();
-                idServices.put(id, taskName);
+                id = registration.getId();
                 logger.info("Task scheduling service has been created and started.");
             }
         } catch (InterruptedException | ExecutionException e) {
@@ -374,39 +506,297 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
             record.setThrown(e);
             logger.log(record);
         }
+        if (id == Integer.MIN_VALUE) {
+            registry.remove(registration);
+        }
 
         return id;
     }
 
+    private static void logAlreadyStarted(String taskName) {
+        logger.warning(String.format(
+                "%s is already started. Service will not be started.",
+                taskName));
+    }
+
     /**
      * {@inheritDoc}
+     * 
+     * <p>
+     * Task classes are instantiated on a pool of up to one thread per
+     * available processor. The valid definitions are then registered under a
+     * single lock, so other operations see all of them or none, and their
+     * services are started.
+     * </p>
      */
     @Override
-    public void stopTask(String taskName) {
-        Service serviceToStop = services.get(taskName);
-        if (serviceToStop != null) {
-            Future<State> serviceStopped = serviceToStop.stop();
+    public TaskStartResult[] startTasks(TaskDefinition[] definitions) {
+        TaskStartResult[] results = new TaskStartResult[definitions.length];
+        Properties tasks = TaskProperties.load();
+        List<Integer> valid = Lists.newArrayList();
+        List<Callable<ScheduledQueuingService>> creations = Lists
+                .newArrayList();
+        Set<String> names = Sets.newHashSet();
+        for (int i = 0; i < definitions.length; i++) {
+            final TaskDefinition definition = definitions[i] == null ? null
+                    : withDefaults(tasks, definitions[i]);
+            String error = validate(definition);
+            if (error == null && !names.add(definition.getTaskName())) {
+                error = "Task is defined more than once.";
+            }
+            if (error != null) {
+                results[i] = new TaskStartResult(definition == null ? null
+                        : definition.getTaskName(), null, error);
+                continue;
+            }
+            valid.add(i);
+            creations.add(new Callable<ScheduledQueuingService>() {
+
+                @Override
+                public ScheduledQueuingService call() {
+                    return createService(definition.getTaskName(),
+                            definition.getTaskClassname(),
+                            Objects.firstNonNull(definition.getInitialDelay(),
+                                    0L), definition.getInterval(),
+                            definition.getTimeunit(), definition.getOptions());
+                }
+            });
+        }
+        if (valid.isEmpty()) {
+            return results;
+        }
 
+        List<Future<ScheduledQueuingService>> created = createInParallel(creations);
+        String[] taskNames = new String[definitions.length];
+        ScheduledQueuingService[] toRegister = new ScheduledQueuingService[definitions.length];
+        for (int v = 0; v < valid.size(); v++) {
+            int i = valid.get(v);
+            taskNames[i] = definitions[i].getTaskName();
             try {
-                if (serviceStopped.get() == State.TERMINATED) {
-                    logger.warning("Scheduling service for " + taskName
-                            + " stopped.");
-                }
-            } catch (InterruptedException | ExecutionException e) {
-                LogRecord record = new LogRecord(Level.WARNING,
-                        "Exception during service stop.");
-                record.setThrown(e);
-                logger.log(record);
-            } finally {
-                services.remove(taskName);
-                for (Integer taskId : idServices.keySet()) {
-                    if (taskName.equals(idServices.get(taskId))) {
-                        idServices.remove(taskId);
-                        break;
-                    }
+                toRegister[i] = created.get(v).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results[i] = new TaskStartResult(taskNames[i], null,
+                        "Interrupted.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                results[i] = new TaskStartResult(taskNames[i], null,
+                        Objects.firstNonNull(cause.getMessage(),
+                                cause.toString()));
+            }
+        }
+
+        Registration[] registrations = registry.registerAll(taskNames,
+                toRegister);
+        for (int i = 0; i < registrations.length; i++) {
+            Registration registration = registrations[i];
+            if (registration != null) {
+                if (registration.getService().startAndWait() == State.RUNNING) {
+                    results[i] = new TaskStartResult(taskNames[i],
+                            registration.getId(), null);
+                } else {
+                    registry.remove(registration);
+                    results[i] = new TaskStartResult(taskNames[i], null,
+                            "Task scheduling service did not start.");
                 }
+            } else if (toRegister[i] != null) {
+                results[i] = new TaskStartResult(taskNames[i], null,
+                        "Task is already started.");
             }
         }
+        logger.info(String.format(
+                "Started %d of %d task scheduling services.", countStarted(results),
+                definitions.length));
+        return results;
+    }
+
+    /**
+     * Instantiates a task and the Service that schedules it.
+     * 
+     * <p>
+     * A lazy task is not instantiated here; only the presence of its class
+     * file is checked, so the class itself is not loaded until the first run.
+     * </p>
+     * 
+     * @throws IllegalArgumentException
+     *             if the task class can't be instantiated, or the task is
+     *             assigned to a worker pool that does not exist.
+     */
+    private ScheduledQueuingService createService(String taskName,
+            String taskClassname, Long initialDelay, Long interval,
+            String timeunit, Map<String, String> options) {
+        String poolName = options.get(POOL_OPTION);
+        BlockingQueue<NamedRunnable> taskQueue = pools.getQueue(poolName);
+        if (taskQueue == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Unknown worker pool %s.", poolName));
+        }
+        boolean release = Boolean.parseBoolean(options.get(RELEASE_OPTION));
+        NamedRunnable task;
+        if (release || Boolean.parseBoolean(options.get(LAZY_OPTION))) {
+            // The class file is looked up by the class loader that will
+            // load the class on the first run.
+            ClassLoader classLoader = getClass().getClassLoader();
+            if (classLoader.getResource(taskClassname.replace('.', '/')
+                    + ".class") == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Could not find %s.", taskClassname));
+            }
+            task = new LazyNamedRunnable(taskClassname, release, classLoader);
+        } else {
+            task = loadRunnable(taskClassname);
+            if (task == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Could not instantiate %s.", taskClassname));
+            }
+        }
+        task.setName(taskName);
+        Schedule schedule = createSchedule(taskName, initialDelay, interval,
+                timeunit, options);
+        boolean singleFlight = Boolean.parseBoolean(options
+                .get(SINGLE_FLIGHT_OPTION));
+        MisfirePolicy misfirePolicy = MisfirePolicy.valueOf(Objects
+                .firstNonNull(options.get(MISFIRE_POLICY_OPTION), "FIRE_ALL")
+                .toUpperCase());
+        String maxParallelism = options.get(MAX_PARALLELISM_OPTION);
+        ScheduledQueuingService sqs = new ScheduledQueuingService(schedule,
+                task, taskQueue, Timers.sharedTimer(), singleFlight,
+                misfirePolicy, maxParallelism == null ? 0 : Integer
+                        .parseInt(maxParallelism.trim()));
+        String priority = options.get(PRIORITY_OPTION);
+        if (priority != null) {
+            sqs.setPriority(Integer.parseInt(priority.trim()));
+        }
+        sqs.addListener(Listeners.createLoggingServiceListener(taskName),
+                MoreExecutors.sameThreadExecutor());
+        return sqs;
+    }
+
+    /**
+     * Creates the Schedule of a task from its parameters and the cron and
+     * stagger options.
+     */
+    private static Schedule createSchedule(String taskName, Long initialDelay,
+            Long interval, String timeunit, Map<String, String> options) {
+        String cron = options.get(CRON_OPTION);
+        Schedule schedule = cron != null ? Schedules.createCronSchedule(cron)
+                : Schedules.createSchedule(initialDelay, interval,
+                        TimeUnit.valueOf(timeunit.toUpperCase()));
+        Stagger stagger = Stagger.valueOf(Objects.firstNonNull(
+                options.get(STAGGER_OPTION), "NONE").toUpperCase());
+        long staggerWindow = cron != null ? TimeUnit.MINUTES.toMillis(1)
+                : schedule.getTimeUnit().toMillis(interval);
+        return Schedules.createStaggeredSchedule(schedule,
+                stagger.offset(taskName, staggerWindow));
+    }
+
+    private static TaskDefinition withDefaults(Properties tasks,
+            TaskDefinition definition) {
+        return new TaskDefinition(definition.getTaskName(),
+                definition.getTaskClassname(), definition.getInitialDelay(),
+                definition.getInterval(), definition.getTimeunit(),
+                withDefaults(tasks, definition.getOptions()));
+    }
+
+    private static List<Future<ScheduledQueuingService>> createInParallel(
+            List<Callable<ScheduledQueuingService>> creations) {
+        ExecutorService creator = Executors.newFixedThreadPool(Math.min(
+                creations.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            return creator.invokeAll(creations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while instantiating tasks.", e);
+        } finally {
+            creator.shutdown();
+        }
+    }
+
+    /**
+     * @return why the definition can't be started, or <code>null</code> if it
+     *         can.
+     */
+    private static String validate(TaskDefinition definition) {
+        if (definition == null) {
+            return "Task definition is missing.";
+        } else if (Strings.isNullOrEmpty(definition.getTaskName())) {
+            return "Task name is required.";
+        } else if (Strings.isNullOrEmpty(definition.getTaskClassname())) {
+            return "Task class name is required.";
+        }
+        return validateSchedule(definition.getInitialDelay(),
+                definition.getInterval(), definition.getTimeunit(),
+                definition.getOptions());
+    }
+
+    /**
+     * @return why a Schedule can't be created from the parameters, or
+     *         <code>null</code> if it can.
+     */
+    private static String validateSchedule(Long initialDelay, Long interval,
+            String timeunit, Map<String, String> options) {
+        if (options.containsKey(CRON_OPTION)) {
+            return null;
+        } else if (interval == null || interval <= 0) {
+            return "Interval must be positive.";
+        } else if (initialDelay != null && initialDelay < 0) {
+            return "Initial delay must not be negative.";
+        } else if (Strings.isNullOrEmpty(timeunit)) {
+            return "Time unit is required.";
+        }
+        try {
+            TimeUnit.valueOf(timeunit.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return String.format("Unknown time unit %s.", timeunit);
+        }
+        return null;
+    }
+
+    private static int countStarted(TaskStartResult[] results) {
+        int started = 0;
+        for (TaskStartResult result : results) {
+            if (result.getTaskId() != null) {
+                started++;
+            }
+        }
+        return started;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean reschedule(Integer taskId, Long initialDelay,
+            Long interval, String timeunit, Map<String, String> options) {
+        Registration registration = registry.get(taskId);
+        if (registration == null) {
+            return false;
+        }
+        Map<String, String> scheduleOptions = withDefaults(
+                TaskProperties.load(), options);
+        String error = validateSchedule(initialDelay, interval, timeunit,
+                scheduleOptions);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        Schedule schedule = createSchedule(registration.getName(),
+                Objects.firstNonNull(initialDelay, 0l), interval, timeunit,
+                scheduleOptions);
+        registration.getService().reschedule(schedule);
+        logger.info(String.format("%s rescheduled.", registration.getName()));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stopTask(String taskName) {
+        Registration registration = registry.get(taskName);
+        if (registration != null) {
+            stop(registration);
+        }
     }
 
     /**
@@ -414,27 +804,28 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
      */
     @Override
     public void stopTask(Integer taskId) {
-        String taskName = idServices.get(taskId);
-        if (taskName != null) {
-            Service serviceToStop = services.get(taskName);
-            if (serviceToStop != null) {
-                Future<State> serviceStopped = serviceToStop.stop();
-
-                try {
-                    if (serviceStopped.get() == State.TERMINATED) {
-                        logger.warning("Scheduling service for " + taskName
-                                + " stopped.");
-                    }
-                } catch (InterruptedException | ExecutionException e) {
-                    LogRecord record = new LogRecord(Level.WARNING,
-                            "Exception during service stop.");
-                    record.setThrown(e);
-                    logger.log(record);
-                } finally {
-                    services.remove(taskName);
-                    idServices.remove(taskId);
-                }
+        Registration registration = registry.get(taskId);
+        if (registration != null) {
+            stop(registration);
+        }
+    }
+
+    private void stop(Registration registration) {
+        String taskName = registration.getName();
+        Future<State> serviceStopped = registration.getService().stop();
+
+        try {
+            if (serviceStopped.get() == State.TERMINATED) {
+                logger.warning("Scheduling service for " + taskName
+                        + " stopped.");
             }
+        } catch (InterruptedException | ExecutionException e) {
+            LogRecord record = new LogRecord(Level.WARNING,
+                    "Exception during service stop.");
+            record.setThrown(e);
+            logger.log(record);
+        } finally {
+            registry.remove(registration);
         }
     }
 
@@ -444,11 +835,12 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
     @Override
     public Object[][] tasks() {
 
-        Object[][] tasks = new Object[idServices.size()][2];
+        List<Registration> registrations = registry.snapshot();
+        Object[][] tasks = new Object[registrations.size()][];
         int i = 0;
-        for (Integer taskId : idServices.keySet()) {
-            tasks[i][0] = taskId;
-            tasks[i++][1] = idServices.get(taskId);
+        for (Registration registration : registrations) {
+            tasks[i++] = new Object[] { registration.getId(),
+                    registration.getName() };
         }
 
         return tasks;
@@ -459,13 +851,39 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
      */
     @Override
     public void queueImmediately(String taskName) {
-        ScheduledQueuingService toQueue = services.get(taskName);
-        if (toQueue != null) {
-            taskQueue.add(toQueue.getTask());
-            logger.info(String.format("%s queued.", taskName));
+        Registration registration = registry.get(taskName);
+        if (registration != null) {
+            ScheduledQueuingService toQueue = registration.getService();
+            if (toQueue.queueNow()) {
+                logger.info(String.format("%s queued.", taskName));
+            } else {
+                logger.warning(String.format(
+                        "%s was not queued; the task queue is full.",
+                        taskName));
+            }
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long coalescedTriggers(String taskName) {
+        Registration registration = registry.get(taskName);
+        return registration == null ? null : registration.getService()
+                .getCoalescedTriggers();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long collapsedFires(String taskName) {
+        Registration registration = registry.get(taskName);
+        return registration == null ? null : registration.getService()
+                .getCollapsedFires();
+    }
+
     private NamedRunnable loadRunnable(String classname) {
         NamedRunnable runnable = null;
 
@@ -474,11 +892,7 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
             Class<NamedRunnable> runnableClass = (Class<NamedRunnable>) Class
                     .forName(classname);
 
-            runnable = (NamedRunnable) Proxy.newProxyInstance(
-                    StateTransition.class.getClassLoader(),
-                    new Class<?>[] { NamedRunnable.class },
-                    new StatefulNamedRunnable(runnableClass.newInstance(),
-                            stateTransition));
+            runnable = runnableClass.newInstance();
         } catch (ClassNotFoundException | InstantiationException
                 | IllegalAccessException e) {
 
@@ -513,12 +927,40 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
                 "intervalTimeunit", "java.lang.String",
                 "Time unit for the execution interval.");
 
+        MBeanParameterInfo taskIdParam = new MBeanParameterInfo("taskId",
+                "java.lang.Integer", "Id of the task to manipulate.");
+
+        MBeanParameterInfo initialDelayParam = new MBeanParameterInfo(
+                "initialDelay", "java.lang.Long",
+                "Time units to wait before the first execution.");
+
+        MBeanParameterInfo optionsParam = new MBeanParameterInfo("options",
+                "java.util.Map", "Execution options keyed by name.");
+
+        MBeanParameterInfo definitionsParam = new MBeanParameterInfo(
+                "definitions", TaskDefinition[].class.getName(),
+                "Definitions of the tasks to start.");
+
         MBeanOperationInfo[] operations = {
                 new MBeanOperationInfo("startTask",
                         "Starts a new scheduled task.",
-                        new MBeanParameterInfo[] { serviceClassnameParam,
+                        new MBeanParameterInfo[] { taskNameParam,
+                                serviceClassnameParam, initialDelayParam,
                                 executionIntervalParam, timeUnitParam },
                         "java.lang.Integer", MBeanOperationInfo.ACTION),
+                new MBeanOperationInfo("startTask",
+                        "Starts a new scheduled task with execution options.",
+                        new MBeanParameterInfo[] { taskNameParam,
+                                serviceClassnameParam, initialDelayParam,
+                                executionIntervalParam, timeUnitParam,
+                                optionsParam }, "java.lang.Integer",
+                        MBeanOperationInfo.ACTION),
+                new MBeanOperationInfo(
+                        "startTasks",
+                        "Starts many scheduled tasks and returns the id of each or why it was not started.",
+                        new MBeanParameterInfo[] { definitionsParam },
+                        TaskStartResult[].class.getName(),
+                        MBeanOperationInfo.ACTION),
                 new MBeanOperationInfo("stopTask",
                         "Removes the named scheduled service.",
                         new MBeanParameterInfo[] { serviceNameParam }, "void",
@@ -528,6 +970,23 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
                         "Adds the named task to the queue; allows ad-hoc submission of a task.",
                         new MBeanParameterInfo[] { taskNameParam }, "void",
                         MBeanOperationInfo.ACTION),
+                new MBeanOperationInfo(
+                        "reschedule",
+                        "Replaces the schedule of a started task without stopping it.",
+                        new MBeanParameterInfo[] { taskIdParam,
+                                initialDelayParam, executionIntervalParam,
+                                timeUnitParam, optionsParam },
+                        "java.lang.Boolean", MBeanOperationInfo.ACTION),
+                new MBeanOperationInfo(
+                        "coalescedTriggers",
+                        "Number of runs of the named task merged into a run already waiting.",
+                        new MBeanParameterInfo[] { taskNameParam },
+                        "java.lang.Long", MBeanOperationInfo.INFO),
+                new MBeanOperationInfo(
+                        "collapsedFires",
+                        "Number of missed runs of the named task not queued because of its misfire policy.",
+                        new MBeanParameterInfo[] { taskNameParam },
+                        "java.lang.Long", MBeanOperationInfo.INFO),
                 new MBeanOperationInfo("tasks",
                         "Lists the currently started tasks with an identifier",
                         null, "java.lang.Object[][]", MBeanOperationInfo.INFO) };
@@ -541,17 +1000,12 @@ public class TaskControllerImpl extends StandardMBean implements TaskController
         super.preDeregister();
         logger.warning("Shutting down started services.");
 
-        try {
-            for (String serviceName : services.keySet()) {
-                ListenableFuture<?> svcStop = services.get(serviceName).stop();
-                svcStop.addListener(
-                        Listeners.createServiceStopListener(serviceName),
-                        MoreExecutors.sameThreadExecutor());
-                svcStop.get(500l, TimeUnit.MILLISECONDS);
-            }
-        } finally {
-            services.clear();
-            idServices.clear();
+        for (Registration registration : registry.clear()) {
+            ListenableFuture<?> svcStop = registration.getService().stop();
+            svcStop.addListener(Listeners
+                    .createServiceStopListener(registration.getName()),
+                    MoreExecutors.sameThreadExecutor());
+            svcStop.get(500l, TimeUnit.MILLISECONDS);
         }
     }
 }
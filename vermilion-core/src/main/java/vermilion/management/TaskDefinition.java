@@ -0,0 +1,96 @@
+package vermilion.management;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Everything needed to start a scheduled task.
+ *
+ * <p>
+ * The fields mirror the parameters of
+ * {@link TaskController#startTask(String, String, Long, Long, String, Map)}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class TaskDefinition implements Serializable {
+
+    /**
+     * The serialVersionUID.
+     */
+    private static final long serialVersionUID = -2471097368146183470L;
+
+    private final String taskName;
+
+    private final String taskClassname;
+
+    private final Long initialDelay;
+
+    private final Long interval;
+
+    private final String timeunit;
+
+    private final Map<String, String> options;
+
+    /**
+     * Constructs a new TaskDefinition.
+     *
+     * @param taskName
+     *            name of the task.
+     * @param taskClassname
+     *            class name of the NamedRunnable implementation.
+     * @param initialDelay
+     *            number of time units to wait before the first execution, or
+     *            <code>null</code> for none.
+     * @param interval
+     *            execution interval.
+     * @param timeunit
+     *            time units for the execution interval. Value must be one of
+     *            the values of TimeUnit.
+     * @param options
+     *            execution options keyed by name, or <code>null</code> for
+     *            none.
+     */
+    @ConstructorProperties({ "taskName", "taskClassname", "initialDelay",
+            "interval", "timeunit", "options" })
+    public TaskDefinition(String taskName, String taskClassname,
+            Long initialDelay, Long interval, String timeunit,
+            Map<String, String> options) {
+        this.taskName = taskName;
+        this.taskClassname = taskClassname;
+        this.initialDelay = initialDelay;
+        this.interval = interval;
+        this.timeunit = timeunit;
+        this.options = options == null ? Collections
+                .<String, String> emptyMap() : ImmutableMap.copyOf(options);
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public String getTaskClassname() {
+        return taskClassname;
+    }
+
+    public Long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public Long getInterval() {
+        return interval;
+    }
+
+    public String getTimeunit() {
+        return timeunit;
+    }
+
+    public Map<String, String> getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,210 @@
+package vermilion.management;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Records latencies of named tasks in {@linkplain LatencyHistogram histograms},
+ * and counts the runs of each task that finished after their deadline.
+ *
+ * <p>
+ * Recording is lock-free so it can be done on the hot path of dispatching and
+ * running tasks, and each histogram has a fixed size, so memory grows with the
+ * number of tasks but not with the number of runs.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class TaskMetrics implements TaskMetricsMonitor {
+
+    private static final String PRIORITY_PREFIX = "priority ";
+
+    private final ConcurrentMap<String, LatencyHistogram> queueWait = Maps
+            .newConcurrentMap();
+
+    private final ConcurrentMap<String, LatencyHistogram> queueWaitByPriority = Maps
+            .newConcurrentMap();
+
+    private final ConcurrentMap<String, LatencyHistogram> runTime = Maps
+            .newConcurrentMap();
+
+    private final ConcurrentMap<String, LatencyHistogram> lateness = Maps
+            .newConcurrentMap();
+
+    private final ConcurrentMap<String, AtomicLong> deadlineMisses = Maps
+            .newConcurrentMap();
+
+    private volatile boolean resetOnRead = true;
+
+    /**
+     * Records how long a run of the named task waited in the task queue.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param nanos
+     *            the wait in nanoseconds.
+     */
+    public void recordQueueWait(String taskName, long nanos) {
+        histogram(queueWait, taskName).record(nanos);
+    }
+
+    /**
+     * Records how long a run of the named task waited in the task queue, both
+     * for the task and for the priority it was queued with.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param priority
+     *            the priority of the run.
+     * @param nanos
+     *            the wait in nanoseconds.
+     */
+    public void recordQueueWait(String taskName, int priority, long nanos) {
+        recordQueueWait(taskName, nanos);
+        histogram(queueWaitByPriority, PRIORITY_PREFIX + priority).record(
+                nanos);
+    }
+
+    /**
+     * Records how long a run of the named task ran.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param nanos
+     *            the run time in nanoseconds.
+     */
+    public void recordRunTime(String taskName, long nanos) {
+        histogram(runTime, taskName).record(nanos);
+    }
+
+    /**
+     * Records how long after it was due a run of the named task was queued.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param nanos
+     *            the lateness in nanoseconds.
+     */
+    public void recordLateness(String taskName, long nanos) {
+        histogram(lateness, taskName).record(nanos);
+    }
+
+    /**
+     * Counts a run of the named task that finished after its deadline.
+     *
+     * @param taskName
+     *            the name of the task.
+     */
+    public void recordDeadlineMiss(String taskName) {
+        String key = Strings.nullToEmpty(taskName);
+        AtomicLong count = deadlineMisses.get(key);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = deadlineMisses.putIfAbsent(key, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public List<LatencyStatistics> getQueueWait() {
+        return statistics(queueWait);
+    }
+
+    @Override
+    public List<LatencyStatistics> getQueueWaitByPriority() {
+        return statistics(queueWaitByPriority);
+    }
+
+    @Override
+    public List<LatencyStatistics> getRunTime() {
+        return statistics(runTime);
+    }
+
+    @Override
+    public List<LatencyStatistics> getLateness() {
+        return statistics(lateness);
+    }
+
+    @Override
+    public Map<String, Long> getDeadlineMisses() {
+        ImmutableSortedMap.Builder<String, Long> misses = ImmutableSortedMap
+                .naturalOrder();
+        for (Map.Entry<String, AtomicLong> count : deadlineMisses.entrySet()) {
+            misses.put(count.getKey(), count.getValue().get());
+        }
+        return misses.build();
+    }
+
+    @Override
+    public boolean isResetOnRead() {
+        return resetOnRead;
+    }
+
+    @Override
+    public void setResetOnRead(boolean resetOnRead) {
+        this.resetOnRead = resetOnRead;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Each histogram and count is emptied in place rather than removed, so a
+     * worker recording at the same time never records into one that has
+     * already been dropped. Tasks stay listed with nothing recorded.
+     * </p>
+     */
+    @Override
+    public void reset() {
+        reset(queueWait);
+        reset(queueWaitByPriority);
+        reset(runTime);
+        reset(lateness);
+        for (AtomicLong count : deadlineMisses.values()) {
+            count.set(0l);
+        }
+    }
+
+    private static void reset(Map<String, LatencyHistogram> histograms) {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private static LatencyHistogram histogram(
+            ConcurrentMap<String, LatencyHistogram> histograms, String taskName) {
+        String key = Strings.nullToEmpty(taskName);
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    private List<LatencyStatistics> statistics(
+            Map<String, LatencyHistogram> histograms) {
+        boolean reset = resetOnRead;
+        List<LatencyStatistics> statistics = Lists.newArrayList();
+        for (Map.Entry<String, LatencyHistogram> histogram : histograms
+                .entrySet()) {
+            statistics.add(histogram.getValue().snapshot(histogram.getKey(),
+                    reset));
+        }
+        return statistics;
+    }
+}
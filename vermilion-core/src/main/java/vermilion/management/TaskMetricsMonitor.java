@@ -0,0 +1,82 @@
+package vermilion.management;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MXBean;
+
+/**
+ * MXBean type for monitoring task latencies via JMX.
+ *
+ * <p>
+ * Each latency is summarized per task name. If {@linkplain #isResetOnRead()
+ * reset on read} is on (the default), reading a latency attribute discards
+ * what was recorded for it, so each read covers the time since the previous
+ * one.
+ * </p>
+ *
+ * <p>
+ * Deadline misses are counted from the start, or from the last
+ * {@linkplain #reset() reset}, and are not reset on read.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+@MXBean
+public interface TaskMetricsMonitor {
+
+    /**
+     * The object name used to register instances of TaskMetricsMonitor.
+     */
+    public static final String OBJECT_NAME = String.format("%s:type=%s",
+            TaskMetricsMonitor.class.getPackage().getName(),
+            TaskMetricsMonitor.class.getSimpleName());
+
+    /**
+     * @return how long runs of each task waited in the task queue.
+     */
+    public List<LatencyStatistics> getQueueWait();
+
+    /**
+     * @return how long runs waited in the task queue, per priority. Each is
+     *         named after its priority, as in {@code priority 5}.
+     */
+    public List<LatencyStatistics> getQueueWaitByPriority();
+
+    /**
+     * @return how long runs of each task ran.
+     */
+    public List<LatencyStatistics> getRunTime();
+
+    /**
+     * @return how long after they were due by their Schedule runs of each
+     *         task were queued.
+     */
+    public List<LatencyStatistics> getLateness();
+
+    /**
+     * @return how many runs of each task finished after their deadline, the
+     *         next time the task was due by its Schedule. Tasks that missed no
+     *         deadline are left out.
+     */
+    public Map<String, Long> getDeadlineMisses();
+
+    /**
+     * @return <code>true</code> if reading a latency attribute discards what
+     *         was recorded for it.
+     */
+    public boolean isResetOnRead();
+
+    /**
+     * @param resetOnRead
+     *            whether reading a latency attribute discards what was
+     *            recorded for it.
+     */
+    public void setResetOnRead(boolean resetOnRead);
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public void reset();
+}
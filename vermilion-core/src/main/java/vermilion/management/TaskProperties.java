@@ -0,0 +1,53 @@
+package vermilion.management;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Loads the optional {@code tasks.properties} file from the top of the
+ * classpath.
+ *
+ * @author andy
+ *
+ */
+final class TaskProperties {
+
+    private static final Logger logger = Logger.getLogger(TaskProperties.class
+            .getSimpleName());
+
+    private TaskProperties() {
+        // empty constructor
+    }
+
+    /**
+     * @return the properties in {@code tasks.properties}, or no properties if
+     *         the file is not found or can't be read.
+     */
+    static Properties load() {
+        Properties tasks = new Properties();
+        URL tasksPropertiesFile = TaskProperties.class
+                .getResource("/tasks.properties");
+        if (tasksPropertiesFile != null) {
+
+            try (InputStream tasksIn = tasksPropertiesFile.openStream()) {
+
+                tasks.load(tasksIn);
+
+            } catch (IOException e) {
+                LogRecord record = new LogRecord(Level.CONFIG,
+                        "NON-FATAL: Could not load tasks.properties file.");
+                record.setThrown(e);
+                logger.log(record);
+            }
+
+        } else {
+            logger.config("tasks.properties not found.");
+        }
+        return tasks;
+    }
+}
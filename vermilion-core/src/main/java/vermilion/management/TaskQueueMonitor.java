@@ -0,0 +1,48 @@
+package vermilion.management;
+
+import javax.management.MXBean;
+
+/**
+ * MXBean type for monitoring a bounded task queue via JMX.
+ *
+ * @author andy
+ *
+ */
+@MXBean
+public interface TaskQueueMonitor {
+
+    /**
+     * The object name used to register instances of TaskQueueMonitor.
+     */
+    public static final String OBJECT_NAME = String.format("%s:type=%s",
+            TaskQueueMonitor.class.getPackage().getName(),
+            TaskQueueMonitor.class.getSimpleName());
+
+    /**
+     * @return the number of tasks in the queue.
+     */
+    public int getSize();
+
+    /**
+     * @return the maximum number of tasks the queue holds.
+     */
+    public int getCapacity();
+
+    /**
+     * @return the name of the {@link OverflowPolicy} applied when the queue is
+     *         full.
+     */
+    public String getOverflowPolicy();
+
+    /**
+     * @return the number of tasks that were not queued and whose producer was
+     *         told so.
+     */
+    public long getRejectedCount();
+
+    /**
+     * @return the number of tasks that were discarded, dropped from the queue
+     *         or merged into a queued run without their producer being told.
+     */
+    public long getShedCount();
+}
@@ -0,0 +1,198 @@
+package vermilion.management;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import vermilion.core.ScheduledQueuingService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+/**
+ * The started tasks, indexed both by name and by id.
+ *
+ * <p>
+ * Lookups by either key go straight to a concurrent map and never lock.
+ * Registrations and removals are made under a single lock and update both
+ * indexes together, so a task is always found by both its name and its id or
+ * by neither.
+ * </p>
+ *
+ * <p>
+ * The {@linkplain #snapshot() list of all tasks} is built when it is first
+ * asked for after a change and shared until the next change, so listing the
+ * tasks costs nothing while they stay the same.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+final class TaskRegistry {
+
+    private static final Ordering<Registration> BY_ID = new Ordering<Registration>() {
+
+        @Override
+        public int compare(Registration left, Registration right) {
+            return left.getId().compareTo(right.getId());
+        }
+    };
+
+    private final ConcurrentMap<String, Registration> byName = Maps
+            .newConcurrentMap();
+
+    private final ConcurrentMap<Integer, Registration> byId = Maps
+            .newConcurrentMap();
+
+    private final SequenceGenerator ids = new SequenceGenerator();
+
+    private volatile ImmutableList<Registration> snapshot = ImmutableList.of();
+
+    /**
+     * Registers a task under a new id.
+     *
+     * @param name
+     *            the name of the task.
+     * @param service
+     *            the Service that schedules the task.
+     * @return the registration, or <code>null</code> if a task with the same
+     *         name is already registered.
+     */
+    synchronized Registration register(String name,
+            ScheduledQueuingService service) {
+        checkNotNull(name, "Task name can't be null.");
+        checkNotNull(service, "Service can't be null.");
+        if (byName.containsKey(name)) {
+            return null;
+        }
+        Registration registration = new Registration(ids.next(), name,
+                service);
+        byName.put(name, registration);
+        byId.put(registration.getId(), registration);
+        snapshot = null;
+        return registration;
+    }
+
+    /**
+     * Registers many tasks at once; other threads see all of them or none.
+     *
+     * @param names
+     *            the names of the tasks.
+     * @param services
+     *            the Services that schedule the tasks, at the same index as
+     *            their names. A <code>null</code> Service is skipped.
+     * @return the registrations, at the same index as the names, holding
+     *         <code>null</code> for each task that was skipped or is already
+     *         registered.
+     */
+    synchronized Registration[] registerAll(String[] names,
+            ScheduledQueuingService[] services) {
+        Registration[] registrations = new Registration[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (services[i] != null) {
+                registrations[i] = register(names[i], services[i]);
+            }
+        }
+        return registrations;
+    }
+
+    /**
+     * @return the registration of the named task, or <code>null</code> if
+     *         there is none.
+     */
+    Registration get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return the registration of the task with the given id, or
+     *         <code>null</code> if there is none.
+     */
+    Registration get(Integer id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Removes a registration if it is still registered.
+     *
+     * @return <code>true</code> if it was removed.
+     */
+    synchronized boolean remove(Registration registration) {
+        if (byName.remove(registration.getName(), registration)) {
+            byId.remove(registration.getId());
+            snapshot = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all registrations.
+     *
+     * @return the registrations that were removed.
+     */
+    synchronized List<Registration> clear() {
+        List<Registration> removed = snapshot();
+        byName.clear();
+        byId.clear();
+        snapshot = ImmutableList.of();
+        return removed;
+    }
+
+    /**
+     * @return all registrations, ordered by id. The list does not change when
+     *         tasks are later registered or removed.
+     */
+    List<Registration> snapshot() {
+        ImmutableList<Registration> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = BY_ID.immutableSortedCopy(byId.values());
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the number of registered tasks.
+     */
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * A task registered under a name and an id.
+     */
+    static final class Registration {
+
+        private final Integer id;
+
+        private final String name;
+
+        private final ScheduledQueuingService service;
+
+        private Registration(Integer id, String name,
+                ScheduledQueuingService service) {
+            this.id = id;
+            this.name = name;
+            this.service = service;
+        }
+
+        Integer getId() {
+            return id;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        ScheduledQueuingService getService() {
+            return service;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package vermilion.management;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+
+/**
+ * The outcome of starting one task of a
+ * {@linkplain TaskController#startTasks(TaskDefinition[]) bulk start}: either
+ * the id of the started task or the reason it was not started.
+ *
+ * @author andy
+ *
+ */
+public class TaskStartResult implements Serializable {
+
+    /**
+     * The serialVersionUID.
+     */
+    private static final long serialVersionUID = 4907128861346514721L;
+
+    private final String taskName;
+
+    private final Integer taskId;
+
+    private final String error;
+
+    /**
+     * Constructs a new TaskStartResult.
+     *
+     * @param taskName
+     *            the name of the task.
+     * @param taskId
+     *            the id of the started task, or <code>null</code> if it was not
+     *            started.
+     * @param error
+     *            why the task was not started, or <code>null</code> if it was.
+     */
+    @ConstructorProperties({ "taskName", "taskId", "error" })
+    public TaskStartResult(String taskName, Integer taskId, String error) {
+        this.taskName = taskName;
+        this.taskId = taskId;
+        this.error = error;
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    public Integer getTaskId() {
+        return taskId;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,27 @@
+package vermilion.management;
+
+import java.util.List;
+
+import javax.management.MXBean;
+
+/**
+ * MXBean type for monitoring the worker pools via JMX.
+ *
+ * @author andy
+ *
+ */
+@MXBean
+public interface WorkerPoolMonitor {
+
+    /**
+     * The object name used to register instances of WorkerPoolMonitor.
+     */
+    public static final String OBJECT_NAME = String.format("%s:type=%s",
+            WorkerPoolMonitor.class.getPackage().getName(),
+            WorkerPoolMonitor.class.getSimpleName());
+
+    /**
+     * @return how busy each worker pool is, the default pool first.
+     */
+    public List<WorkerPoolStatistics> getPools();
+}
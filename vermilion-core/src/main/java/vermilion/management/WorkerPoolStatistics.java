@@ -0,0 +1,81 @@
+package vermilion.management;
+
+/**
+ * A snapshot of how busy a named worker pool is.
+ *
+ * @author andy
+ *
+ */
+public class WorkerPoolStatistics {
+
+    private final String poolName;
+
+    private final int size;
+
+    private final int activeCount;
+
+    private final int queueSize;
+
+    private final long completedCount;
+
+    private final long rejectedCount;
+
+    /**
+     * Constructs a new WorkerPoolStatistics.
+     *
+     * @param poolName
+     *            the name of the pool.
+     * @param size
+     *            the number of threads in the pool.
+     * @param activeCount
+     *            the number of threads running a task.
+     * @param queueSize
+     *            the number of runs waiting in the queue of the pool.
+     * @param completedCount
+     *            the number of runs the pool has finished.
+     * @param rejectedCount
+     *            the number of runs the queue of the pool refused because it
+     *            was full.
+     */
+    public WorkerPoolStatistics(String poolName, int size, int activeCount,
+            int queueSize, long completedCount, long rejectedCount) {
+        this.poolName = poolName;
+        this.size = size;
+        this.activeCount = activeCount;
+        this.queueSize = queueSize;
+        this.completedCount = completedCount;
+        this.rejectedCount = rejectedCount;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public long getCompletedCount() {
+        return completedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return the share of the threads in the pool that are running a task,
+     *         from 0 to 1.
+     */
+    public double getUtilization() {
+        return size == 0 ? 0d : (double) activeCount / size;
+    }
+}
@@ -0,0 +1,256 @@
+package vermilion.management;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import vermilion.core.Listeners;
+import vermilion.core.NamedRunnable;
+import vermilion.core.TaskExecutionService;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Named worker pools, each with its own task queue and
+ * {@link TaskExecutionService}, so tasks in one pool can't take the workers of
+ * another.
+ *
+ * <p>
+ * The {@linkplain #DEFAULT_POOL default pool} is the shared task queue and the
+ * TaskExecutionService that takes from it; it is owned by the caller. Other
+ * pools are listed in {@code tasks.properties}:
+ *
+ * <pre>
+ * pools = io, reports
+ * pools.io.size = 16
+ * pools.io.queue = 256
+ * pools.reports.size = 2
+ * </pre>
+ *
+ * The {@code size} of a pool is its number of threads (default the number of
+ * available processors). The {@code queue} of a pool is the capacity of its
+ * task queue; runs offered while it is full are rejected. Without it, the queue
+ * is unbounded unless the kind of queue is always bounded. A task is assigned
+ * to a pool with its {@code execution.pool} property.
+ * </p>
+ *
+ * <p>
+ * <strong>Implementation note</strong>: A (static) JDK logger
+ * {@linkplain Class#getName() named} for this class logs pools that can't be
+ * created at {@linkplain Level.WARNING}.
+ * </p>
+ *
+ * @author andy
+ *
+ */
+public class WorkerPools implements WorkerPoolMonitor {
+
+    /**
+     * The name of the pool of tasks that are not assigned to one.
+     */
+    public static final String DEFAULT_POOL = "default";
+
+    private static final Logger logger = Logger.getLogger(WorkerPools.class
+            .getName());
+
+    private final ImmutableMap<String, Pool> pools;
+
+    /**
+     * Constructs WorkerPools made of the default pool only.
+     *
+     * @param defaultQueue
+     *            the shared task queue.
+     * @param defaultService
+     *            the TaskExecutionService that takes from the shared task
+     *            queue, or <code>null</code> if it is not monitored.
+     *
+     * @throws NullPointerException
+     *             if defaultQueue is <code>null</code>.
+     */
+    public WorkerPools(BlockingQueue<NamedRunnable> defaultQueue,
+            TaskExecutionService defaultService) {
+        this(ImmutableMap.of(DEFAULT_POOL, new Pool(checkNotNull(
+                defaultQueue, "Task queue is null."), defaultService, null)));
+    }
+
+    private WorkerPools(ImmutableMap<String, Pool> pools) {
+        this.pools = pools;
+    }
+
+    /**
+     * Creates the default pool and the pools listed in
+     * {@code tasks.properties}.
+     *
+     * @param defaultQueue
+     *            the shared task queue.
+     * @param defaultService
+     *            the TaskExecutionService that takes from the shared task
+     *            queue.
+     * @param queues
+     *            creates the queue of each listed pool, given its capacity or
+     *            <code>null</code> if it is unbounded.
+     * @param stateTransition
+     *            the StateTransition for the runs of the listed pools.
+     * @param metrics
+     *            where the latencies of the runs of the listed pools are
+     *            recorded.
+     * @return the WorkerPools.
+     *
+     * @throws NullPointerException
+     *             if any of these parameters are <code>null</code>.
+     */
+    public static WorkerPools create(BlockingQueue<NamedRunnable> defaultQueue,
+            TaskExecutionService defaultService,
+            Function<Integer, BlockingQueue<NamedRunnable>> queues,
+            StateTransition stateTransition, TaskMetrics metrics) {
+        checkNotNull(queues, "Queue factory is null.");
+        checkNotNull(metrics, "Task metrics is null.");
+        Map<String, Pool> pools = Maps.newLinkedHashMap();
+        pools.put(DEFAULT_POOL, new Pool(checkNotNull(defaultQueue,
+                "Task queue is null."), checkNotNull(defaultService,
+                "Execution service is null."), null));
+
+        Properties tasks = TaskProperties.load();
+        String poolNames = tasks.getProperty("pools", "").trim();
+        for (String poolName : poolNames.isEmpty() ? new String[0]
+                : poolNames.split(",\\s*")) {
+            if (pools.containsKey(poolName)) {
+                logger.warning(String.format(
+                        "Worker pool %s is already defined.", poolName));
+                continue;
+            }
+            try {
+                pools.put(poolName, createPool(poolName, tasks, queues,
+                        stateTransition, metrics));
+            } catch (IllegalArgumentException e) {
+                logger.warning(String.format(
+                        "Worker pool %s not created: %s", poolName,
+                        e.getMessage()));
+            }
+        }
+        return new WorkerPools(ImmutableMap.copyOf(pools));
+    }
+
+    private static Pool createPool(String poolName, Properties tasks,
+            Function<Integer, BlockingQueue<NamedRunnable>> queues,
+            StateTransition stateTransition, TaskMetrics metrics) {
+        String prefix = String.format("pools.%s.", poolName);
+        int size = Integer.parseInt(tasks.getProperty(prefix + "size",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))
+                .trim());
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive.");
+        }
+        String capacity = tasks.getProperty(prefix + "queue");
+        Integer queueCapacity = capacity == null ? null : Integer
+                .valueOf(capacity.trim());
+        BlockingQueue<NamedRunnable> queue = queues.apply(queueCapacity);
+        BoundedTaskQueue bounded = null;
+        if (queueCapacity != null) {
+            bounded = new BoundedTaskQueue(queue, queueCapacity.intValue(),
+                    OverflowPolicy.REJECT, 0l, TimeUnit.MILLISECONDS);
+            queue = bounded;
+        }
+        BlockingQueue<NamedRunnable> taskQueue = new InstrumentedTaskQueue(
+                queue, stateTransition, metrics);
+        TaskExecutionService service = new TaskExecutionService(taskQueue,
+                stateTransition, size);
+        service.addListener(Listeners.createLoggingServiceListener(String
+                .format("%s Pool Execution Service", poolName)), MoreExecutors
+                .sameThreadExecutor());
+        logger.config(String.format(
+                "Worker pool %s of %d threads, queue capacity %s.", poolName,
+                size, capacity == null ? "unbounded" : capacity.trim()));
+        return new Pool(taskQueue, service, bounded);
+    }
+
+    /**
+     * @param poolName
+     *            the name of the pool, or <code>null</code> for the default
+     *            pool.
+     * @return the task queue of the pool, or <code>null</code> if there is no
+     *         such pool.
+     */
+    public BlockingQueue<NamedRunnable> getQueue(String poolName) {
+        Pool pool = pools.get(poolName == null ? DEFAULT_POOL : poolName);
+        return pool == null ? null : pool.queue;
+    }
+
+    /**
+     * @return the names of the pools, the default pool first.
+     */
+    public Set<String> getPoolNames() {
+        return pools.keySet();
+    }
+
+    /**
+     * Starts the TaskExecutionServices of the pools other than the default
+     * pool.
+     */
+    public void startPools() {
+        for (Map.Entry<String, Pool> pool : pools.entrySet()) {
+            if (!DEFAULT_POOL.equals(pool.getKey())) {
+                pool.getValue().service.start();
+            }
+        }
+    }
+
+    /**
+     * Stops the TaskExecutionServices of the pools other than the default
+     * pool, and waits for them to stop.
+     */
+    public void stopPools() {
+        for (Map.Entry<String, Pool> pool : pools.entrySet()) {
+            if (!DEFAULT_POOL.equals(pool.getKey())) {
+                pool.getValue().service.stopAndWait();
+            }
+        }
+    }
+
+    @Override
+    public List<WorkerPoolStatistics> getPools() {
+        List<WorkerPoolStatistics> statistics = Lists.newArrayList();
+        for (Map.Entry<String, Pool> entry : pools.entrySet()) {
+            Pool pool = entry.getValue();
+            if (pool.service == null) {
+                continue;
+            }
+            statistics.add(new WorkerPoolStatistics(entry.getKey(),
+                    pool.service.getPoolSize(), pool.service.getActiveCount(),
+                    pool.service.getQueueSize(), pool.service
+                            .getCompletedCount(), pool.bounded == null ? 0l
+                            : pool.bounded.getRejectedCount()));
+        }
+        return statistics;
+    }
+
+    /**
+     * The task queue of a pool and the Service that runs what is queued.
+     */
+    private static final class Pool {
+
+        private final BlockingQueue<NamedRunnable> queue;
+
+        private final TaskExecutionService service;
+
+        private final BoundedTaskQueue bounded;
+
+        private Pool(BlockingQueue<NamedRunnable> queue,
+                TaskExecutionService service, BoundedTaskQueue bounded) {
+            this.queue = queue;
+            this.service = service;
+            this.bounded = bounded;
+        }
+    }
+}
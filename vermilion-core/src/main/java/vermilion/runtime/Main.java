@@ -2,6 +2,8 @@ package vermilion.runtime;
 
 import java.lang.reflect.Proxy;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -9,14 +11,34 @@ import java.util.logging.Logger;
 import vermilion.core.Listeners;
 import vermilion.core.NamedRunnable;
 import vermilion.core.TaskExecutionService;
+import vermilion.core.TaskExecutors;
+import vermilion.core.TaskQueues;
+import vermilion.core.WaitStrategy;
+import vermilion.management.BatchingJdbcStateTransition;
+import vermilion.management.BoundedTaskQueue;
+import vermilion.management.DefaultDataSourceProvider;
+import vermilion.management.DefaultPoolConfigurationProvider;
+import vermilion.management.InstrumentedTaskQueue;
+import vermilion.management.JdbcStateTransition;
 import vermilion.management.JmxService;
 import vermilion.management.LoggingStateTransition;
-import vermilion.management.QueueInvocationHandler;
+import vermilion.management.OverflowPolicy;
+import vermilion.management.SingleRowJdbcStateTransition;
 import vermilion.management.StateTransition;
+import vermilion.management.StateTransitionMonitor;
+import vermilion.management.TaskController;
+import vermilion.management.TaskControllerImpl;
+import vermilion.management.TaskMetrics;
+import vermilion.management.TaskMetricsMonitor;
+import vermilion.management.TaskQueueMonitor;
+import vermilion.management.WorkerPoolMonitor;
+import vermilion.management.WorkerPools;
 import vermilion.webapi.WebAppServerService;
 
-import com.google.common.collect.Queues;
+import com.google.common.base.Objects;
+import com.google.common.base.Function;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.Service.State;
 
 public class Main {
@@ -29,36 +51,60 @@ public class Main {
     public static void main(String[] args) {
         Thread shutdownHook = null;
         try {
-            final BlockingQueue<NamedRunnable> tasks = Queues
-                    .newLinkedBlockingQueue();
-            final StateTransition stateTransition = (StateTransition) Proxy
-                    .newProxyInstance(
-                            LoggingStateTransition.class.getClassLoader(),
-                            new Class<?>[] { StateTransition.class },
-                            new LoggingStateTransition());
-            
-            @SuppressWarnings("unchecked")
-            final BlockingQueue<NamedRunnable> taskQueue = (BlockingQueue<NamedRunnable>) Proxy
-                    .newProxyInstance(
-                            QueueInvocationHandler.class.getClassLoader(),
-                            new Class<?>[] { BlockingQueue.class },
-                            new QueueInvocationHandler(tasks, stateTransition));
+            final BlockingQueue<NamedRunnable> tasks = createTaskQueue();
+            final StateTransition stateTransition = createStateTransition();
+
+            final TaskMetrics metrics = new TaskMetrics();
+            final BlockingQueue<NamedRunnable> taskQueue = new InstrumentedTaskQueue(
+                    tasks, stateTransition, metrics);
 
             final String executionServiceName = "Execution Service";
+            String executorType = executorType();
+            int concurrency = "virtual".equals(executorType) ? Integer
+                    .getInteger("vermilion.executor.concurrency", 1000)
+                    : Runtime.getRuntime().availableProcessors();
             final TaskExecutionService tes = new TaskExecutionService(
-                    taskQueue, null, Runtime.getRuntime().availableProcessors());
+                    taskQueue, null, createExecutor(executorType, concurrency),
+                    concurrency);
             tes.addListener(Listeners
                     .createLoggingServiceListener(executionServiceName),
                     MoreExecutors.sameThreadExecutor());
 
+            final WorkerPools pools = WorkerPools.create(taskQueue, tes,
+                    new Function<Integer, BlockingQueue<NamedRunnable>>() {
+
+                        @Override
+                        public BlockingQueue<NamedRunnable> apply(
+                                Integer capacity) {
+                            return createPoolQueue(capacity);
+                        }
+                    }, stateTransition, metrics);
+
+            final TaskControllerImpl taskController = new TaskControllerImpl(
+                    TaskController.class, false, pools, stateTransition);
+
             final String jmxServiceName = "Jmx Service";
-            final JmxService jmx = new JmxService(taskQueue, stateTransition);
+            final JmxService jmx = new JmxService(taskController);
+            if (tasks instanceof BoundedTaskQueue) {
+                jmx.addMXBean((BoundedTaskQueue) tasks, TaskQueueMonitor.class,
+                        TaskQueueMonitor.OBJECT_NAME);
+            }
+            jmx.addMXBean(metrics, TaskMetricsMonitor.class,
+                    TaskMetricsMonitor.OBJECT_NAME);
+            jmx.addMXBean(pools, WorkerPoolMonitor.class,
+                    WorkerPoolMonitor.OBJECT_NAME);
+            if (stateTransition instanceof StateTransitionMonitor) {
+                jmx.addMXBean((StateTransitionMonitor) stateTransition,
+                        StateTransitionMonitor.class,
+                        StateTransitionMonitor.OBJECT_NAME);
+            }
             jmx.addListener(
                     Listeners.createLoggingServiceListener(jmxServiceName),
                     MoreExecutors.sameThreadExecutor());
 
             final String wasServiceName = "Web Application Service";
-            final WebAppServerService was = new WebAppServerService();
+            final WebAppServerService was = new WebAppServerService(
+                    taskController);
             was.addListener(
                     Listeners.createLoggingServiceListener(wasServiceName),
                     MoreExecutors.sameThreadExecutor());
@@ -71,6 +117,10 @@ public class Main {
                                 logger.warning(String.format("%s shutdown OK.",
                                         executionServiceName));
                             }
+                            pools.stopPools();
+                            if (stateTransition instanceof Service) {
+                                ((Service) stateTransition).stopAndWait();
+                            }
                             State jmxState = jmx.stopAndWait();
                             if (jmxState == State.TERMINATED) {
                                 logger.warning(String.format("%s shutdown OK.",
@@ -83,7 +133,11 @@ public class Main {
                             }
                         }
                     }));
+            if (stateTransition instanceof Service) {
+                ((Service) stateTransition).startAndWait();
+            }
             tes.start();
+            pools.startPools();
             jmx.start();
             was.start();
         } catch (RuntimeException ex) {
@@ -105,4 +159,197 @@ public class Main {
         }
     }
 
+    /**
+     * Creates the StateTransition that records the state of task runs.
+     * 
+     * <p>
+     * The StateTransition is chosen with the system property
+     * {@code vermilion.stateTransition}: {@code logging} (the default) logs
+     * transitions, {@code jdbc} writes each transition to the database as it
+     * happens, {@code batching} writes them to the database in the background,
+     * and {@code singlerow} writes one row per execution when it stops.
+     * </p>
+     * 
+     * @return the StateTransition.
+     */
+    private static StateTransition createStateTransition() {
+        String type = System.getProperty("vermilion.stateTransition",
+                "logging");
+        if ("jdbc".equalsIgnoreCase(type)) {
+            return new JdbcStateTransition(new DefaultDataSourceProvider(
+                    new DefaultPoolConfigurationProvider()));
+        } else if ("batching".equalsIgnoreCase(type)) {
+            return new BatchingJdbcStateTransition(
+                    new DefaultDataSourceProvider(
+                            new DefaultPoolConfigurationProvider()));
+        } else if ("singlerow".equalsIgnoreCase(type)) {
+            return new SingleRowJdbcStateTransition(
+                    new DefaultDataSourceProvider(
+                            new DefaultPoolConfigurationProvider()));
+        }
+        return (StateTransition) Proxy.newProxyInstance(
+                LoggingStateTransition.class.getClassLoader(),
+                new Class<?>[] { StateTransition.class },
+                new LoggingStateTransition());
+    }
+
+    /**
+     * Returns the kind of Executor that runs the tasks of the default worker
+     * pool.
+     * 
+     * <p>
+     * The Executor is chosen with the system property
+     * {@code vermilion.executor}: {@code fixed} (the default) for a pool of
+     * one thread per processor, {@code forkjoin} for a work-stealing pool of
+     * one thread per processor in which tasks can fork
+     * {@linkplain vermilion.core.Subtasks subtasks}, or {@code virtual} for a
+     * new virtual thread per task, at most
+     * {@code vermilion.executor.concurrency} (default 1000) at once. On a JDK
+     * without virtual threads, {@code virtual} falls back to {@code fixed}.
+     * </p>
+     * 
+     * @return {@code fixed}, {@code forkjoin} or {@code virtual}.
+     */
+    private static String executorType() {
+        String type = System.getProperty("vermilion.executor", "fixed")
+                .toLowerCase();
+        if ("virtual".equals(type) && !TaskExecutors.hasVirtualThreads()) {
+            logger.warning("Virtual threads are not available on this JDK; using a fixed pool.");
+            return "fixed";
+        } else if (!"virtual".equals(type) && !"forkjoin".equals(type)) {
+            return "fixed";
+        }
+        return type;
+    }
+
+    /**
+     * Creates the Executor that runs the tasks of the default worker pool.
+     * 
+     * @param type
+     *            the kind of Executor, as returned by {@link #executorType()}.
+     * @param concurrency
+     *            the number of threads, or of virtual threads at once.
+     * @return the Executor.
+     */
+    private static ExecutorService createExecutor(String type, int concurrency) {
+        logger.config(String.format("Using a %s executor of %d threads.",
+                type, concurrency));
+        if ("virtual".equals(type)) {
+            return TaskExecutors.createVirtualThreadExecutor();
+        } else if ("forkjoin".equals(type)) {
+            return TaskExecutors.createForkJoinPool(concurrency);
+        }
+        return TaskExecutors.createFixedPool(concurrency);
+    }
+
+    /**
+     * Creates the shared task queue.
+     * 
+     * <p>
+     * The queue is chosen with the system property
+     * {@code vermilion.queue.type}: {@code linked} (the default) for a linked
+     * queue, {@code ringbuffer} for a ring buffer that waits using the
+     * {@link WaitStrategy} named by {@code vermilion.queue.waitStrategy}
+     * (default {@code PARK}), {@code priority} for a queue that hands out the
+     * run of highest priority first, or {@code deadline} for a queue that hands
+     * out the run that is due to finish first. On a priority queue, every
+     * {@code vermilion.queue.agingStep} milliseconds (default 100) a run waits
+     * counts as one level of priority, so low priority runs are not starved.
+     * </p>
+     * 
+     * <p>
+     * A ring buffer is always bounded. Other queues are unbounded unless
+     * {@code vermilion.queue.capacity} or
+     * {@code vermilion.queue.overflowPolicy} is set. A bounded queue holds
+     * {@code vermilion.queue.capacity} tasks (default 1024) and applies the
+     * {@link OverflowPolicy} named by {@code vermilion.queue.overflowPolicy}
+     * (default {@code REJECT}) when full. {@code BLOCK} waits up to
+     * {@code vermilion.queue.blockTimeout} milliseconds (default 500), but only
+     * for runs queued on demand; scheduled runs are never made to wait.
+     * {@code DROP_OLDEST} needs a FIFO queue, so it can't be used with a
+     * priority or deadline queue.
+     * </p>
+     * 
+     * @return the task queue.
+     * 
+     * @throws IllegalArgumentException
+     *             if {@code DROP_OLDEST} is set for a priority or deadline
+     *             queue.
+     */
+    private static BlockingQueue<NamedRunnable> createTaskQueue() {
+        String queueType = System.getProperty("vermilion.queue.type", "linked");
+        Integer capacity = Integer.getInteger("vermilion.queue.capacity");
+        String overflowPolicy = System
+                .getProperty("vermilion.queue.overflowPolicy");
+        boolean ringBuffer = "ringbuffer".equalsIgnoreCase(queueType);
+        if (!ringBuffer && capacity == null && overflowPolicy == null) {
+            return createUnboundedQueue(queueType);
+        }
+
+        int boundedCapacity = capacity == null ? 1024 : capacity.intValue();
+        BlockingQueue<NamedRunnable> tasks;
+        if (ringBuffer) {
+            tasks = createRingBufferQueue(boundedCapacity);
+        } else {
+            tasks = createUnboundedQueue(queueType);
+        }
+        OverflowPolicy policy = OverflowPolicy.valueOf(Objects.firstNonNull(
+                overflowPolicy, "REJECT").toUpperCase());
+        if (policy == OverflowPolicy.DROP_OLDEST
+                && ("priority".equalsIgnoreCase(queueType) || "deadline"
+                        .equalsIgnoreCase(queueType))) {
+            throw new IllegalArgumentException(String.format(
+                    "Overflow policy %s can't be used with a %s task queue.",
+                    policy, queueType));
+        }
+        long blockTimeout = Long.getLong("vermilion.queue.blockTimeout", 500l);
+        logger.config(String.format(
+                "Using a %s task queue of capacity %d (%s).", queueType,
+                boundedCapacity, policy));
+        return new BoundedTaskQueue(tasks, boundedCapacity, policy,
+                blockTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates the task queue of a named worker pool, of the kind named by
+     * {@code vermilion.queue.type}. A ring buffer is always bounded, so a pool
+     * without a queue capacity gets a ring buffer of 1024 tasks; the overflow
+     * policy of the shared queue does not apply to pools.
+     * 
+     * @param capacity
+     *            the capacity of the queue of the pool, or <code>null</code>
+     *            if it is unbounded.
+     * @return the queue, which {@link WorkerPools} bounds to the capacity.
+     */
+    private static BlockingQueue<NamedRunnable> createPoolQueue(
+            Integer capacity) {
+        String queueType = System.getProperty("vermilion.queue.type", "linked");
+        if ("ringbuffer".equalsIgnoreCase(queueType)) {
+            return createRingBufferQueue(capacity == null ? 1024 : capacity
+                    .intValue());
+        }
+        return createUnboundedQueue(queueType);
+    }
+
+    private static BlockingQueue<NamedRunnable> createRingBufferQueue(
+            int capacity) {
+        WaitStrategy waitStrategy = WaitStrategy.valueOf(System.getProperty(
+                "vermilion.queue.waitStrategy", "PARK").toUpperCase());
+        return TaskQueues.createRingBufferQueue(capacity, waitStrategy);
+    }
+
+    private static BlockingQueue<NamedRunnable> createUnboundedQueue(
+            String queueType) {
+        if ("priority".equalsIgnoreCase(queueType)) {
+            long agingStep = Long.getLong("vermilion.queue.agingStep", 100l);
+            logger.config(String.format(
+                    "Using a priority task queue aged every %d ms.", agingStep));
+            return TaskQueues.createPriorityQueue(agingStep,
+                    TimeUnit.MILLISECONDS);
+        } else if ("deadline".equalsIgnoreCase(queueType)) {
+            logger.config("Using an earliest deadline first task queue.");
+            return TaskQueues.createDeadlineQueue();
+        }
+        return TaskQueues.createLinkedQueue();
+    }
 }
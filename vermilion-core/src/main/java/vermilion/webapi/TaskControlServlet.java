@@ -1,17 +1,22 @@
 package vermilion.webapi;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import javax.json.Json;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 import javax.management.JMX;
-import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXConnectorFactory;
-import javax.management.remote.JMXServiceURL;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -19,15 +24,24 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import vermilion.management.TaskController;
+import vermilion.management.TaskDefinition;
+import vermilion.management.TaskStartResult;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.net.HttpHeaders;
 import com.google.common.net.MediaType;
 
 /**
  * Controls tasks via HTTP requests.
  * 
+ * <p>
+ * Requests are handled by calling a {@link TaskController} in-process.
+ * </p>
  * 
  * @author andy
  * 
@@ -40,6 +54,76 @@ public class TaskControlServlet extends HttpServlet {
      */
     private static final long serialVersionUID = 6788902427551784072L;
 
+    /**
+     * Shared by all requests; looking up the JSON provider and its
+     * configuration on every request is expensive.
+     */
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json
+            .createGeneratorFactory(Collections.<String, Object> emptyMap());
+
+    private static final JsonParserFactory PARSER_FACTORY = Json
+            .createParserFactory(Collections.<String, Object> emptyMap());
+
+    private static final byte[] TASK_QUEUED_BODY = encodeJson("status",
+            "Task queued");
+
+    private static final byte[] TASK_STOPPED_BODY = encodeJson("status",
+            "Task is no longer scheduled");
+
+    private static final byte[] TASK_STARTED_BODY = encodeJson("status",
+            "Task started");
+
+    private static final byte[] TASK_RESCHEDULED_BODY = encodeJson("status",
+            "Task rescheduled");
+
+    private static final byte[] TASK_NOT_FOUND_BODY = encodeJson("message",
+            "No such task.");
+
+    private static final byte[] TASK_NOT_STARTED_BODY = encodeJson("message",
+            "Task is already started or could not be started.");
+
+    private static final byte[] BAD_REQUEST_BODY = encodeJson("message",
+            "Malformed request: Json error.");
+
+    private static final byte[] UNSUPPORTED_MEDIA_TYPE_BODY = encodeJson(
+            "message",
+            "The server refused this request because the request entity is in a format not supported by the requested resource for the requested method.");
+
+    private static final String METHOD_PATCH = "PATCH";
+
+    private static final String CRON_OPTION = "execution.cron";
+
+    private final transient TaskController taskController;
+
+    /**
+     * Constructs a new TaskControlServlet that controls tasks through the
+     * TaskController registered with the platform MBeanServer.
+     * 
+     * <p>
+     * This constructor is for containers that instantiate the servlet
+     * themselves; prefer {@link #TaskControlServlet(TaskController)} when the
+     * TaskController is at hand.
+     * </p>
+     */
+    public TaskControlServlet() {
+        this(platformTaskController());
+    }
+
+    /**
+     * Constructs a new TaskControlServlet that controls tasks through the
+     * given TaskController.
+     * 
+     * @param taskController
+     *            the TaskController.
+     * 
+     * @throws NullPointerException
+     *             if taskController is <code>null</code>.
+     */
+    public TaskControlServlet(TaskController taskController) {
+        this.taskController = checkNotNull(taskController,
+                "Task controller is null.");
+    }
+
     /**
      * Handles HTTP GET requests.
      * 
@@ -61,36 +145,21 @@ public class TaskControlServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp)
             throws ServletException, IOException {
-        JMXConnector jmxc = null;
+        Object[][] tasks = taskController.tasks();
 
-        try {
-            jmxc = createJMXConnector();
-            TaskController taskControllerProxy = createTaskControllerProxy(jmxc);
-            Object[][] tasks = taskControllerProxy.tasks();
-
-            resp.setContentType(MediaType.JSON_UTF_8.toString());
-            JsonGenerator jsonGenerator = Json.createGenerator(resp
-                    .getOutputStream());
-            jsonGenerator.writeStartObject();
-            jsonGenerator.writeStartArray("tasks");
-            for (Object[] task : tasks) {
-                jsonGenerator.writeStartObject()
-                        .write("id", ((Integer) task[0]).intValue())
-                        .write("name", (String) task[1]).writeEnd();
-            }
-            jsonGenerator.writeEnd().writeEnd().flush();
-            jsonGenerator.close();
-
-            resp.setStatus(HttpServletResponse.SC_OK);
-
-        } catch (MalformedObjectNameException e) {
-            prepareInternalServerErrorJson(resp);
-            return;
-        } finally {
-            if (jmxc != null) {
-                jmxc.close();
-            }
+        resp.setContentType(MediaType.JSON_UTF_8.toString());
+        resp.setStatus(HttpServletResponse.SC_OK);
+        JsonGenerator jsonGenerator = GENERATOR_FACTORY.createGenerator(
+                resp.getOutputStream(), Charsets.UTF_8);
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeStartArray("tasks");
+        for (Object[] task : tasks) {
+            jsonGenerator.writeStartObject()
+                    .write("id", ((Integer) task[0]).intValue())
+                    .write("name", (String) task[1]).writeEnd();
         }
+        jsonGenerator.writeEnd().writeEnd();
+        jsonGenerator.close();
     }
 
     /**
@@ -124,7 +193,8 @@ public class TaskControlServlet extends HttpServlet {
 
             String currentKey = "";
             String taskName = "";
-            JsonParser parser = Json.createParser(req.getInputStream());
+            JsonParser parser = PARSER_FACTORY.createParser(req
+                    .getInputStream());
             while (parser.hasNext()) {
                 switch (parser.next()) {
                 case KEY_NAME:
@@ -145,24 +215,10 @@ public class TaskControlServlet extends HttpServlet {
                 return;
             }
 
-            JMXConnector jmxc = null;
-            try {
-                jmxc = createJMXConnector();
-                TaskController taskControllerProxy = createTaskControllerProxy(jmxc);
-                taskControllerProxy.queueImmediately(taskName);
-
-                prepareSuccessStatus(resp, HttpServletResponse.SC_ACCEPTED,
-                        "Task queued");
-
-            } catch (MalformedObjectNameException e) {
-                prepareInternalServerErrorJson(resp);
-                return;
-            } finally {
-                if (jmxc != null) {
-                    jmxc.close();
-                }
-            }
+            taskController.queueImmediately(taskName);
 
+            prepareSuccessStatus(resp, HttpServletResponse.SC_ACCEPTED,
+                    TASK_QUEUED_BODY);
         }
     }
 
@@ -170,25 +226,51 @@ public class TaskControlServlet extends HttpServlet {
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp)
             throws ServletException, IOException {
         Integer taskId = Integer.parseInt(req.getPathInfo().substring(1));
-        JMXConnector jmxc = null;
-        try {
-            jmxc = createJMXConnector();
-            TaskController taskControllerProxy = createTaskControllerProxy(jmxc);
-            taskControllerProxy.stopTask(taskId);
+        taskController.stopTask(taskId);
 
-            prepareSuccessStatus(resp, HttpServletResponse.SC_OK,
-                    "Task is no longer scheduled");
-            return;
-        } catch (MalformedObjectNameException e) {
-            prepareInternalServerErrorJson(resp);
-            return;
-        } finally {
-            if (jmxc != null) {
-                jmxc.close();
-            }
-        }
+        prepareSuccessStatus(resp, HttpServletResponse.SC_OK,
+                TASK_STOPPED_BODY);
     }
 
+    /**
+     * Handles HTTP POST requests.
+     * 
+     * <p>
+     * The input holds either a single task, as <code>{"task": {...}}</code>,
+     * or many tasks, as <code>{"tasks": [{...}, ...]}</code>. Each task has a
+     * <code>task_name</code>, <code>task_classname</code>,
+     * <code>initial_delay</code>, <code>interval</code> and
+     * <code>time_unit</code>. A task in a list may give a <code>cron</code>
+     * expression instead of an interval and time unit. Any task may give
+     * <code>options</code>, an object of execution options named as in
+     * {@code tasks.properties} without the task name prefix, for example
+     * <code>{"execution.singleFlight": true, "execution.pool": "io"}</code>.
+     * </p>
+     * 
+     * <p>
+     * Many tasks are started together; a task that can't be started does not
+     * stop the others. The result for each task, in input order, is returned
+     * with either the <code>id</code> of the started task or the
+     * <code>error</code> that stopped it.
+     * </p>
+     * 
+     * <p>
+     * This method can return the following HTTP status codes:
+     * <ul>
+     * <li><strong>201</strong>: a single task was started; its location is
+     * returned in the Location header.</li>
+     * <li><strong>200</strong>: many tasks were given and the result for each
+     * is returned.</li>
+     * <li><strong>400</strong>: a single task was given without all of its
+     * values.</li>
+     * <li><strong>409</strong>: a single task was given that is already
+     * started, or whose scheduling service did not start.</li>
+     * <li><strong>415</strong>: the input is not JSON.</li>
+     * <li><strong>500</strong>: an internal error occurred and an error message
+     * will be returned.</li>
+     * </ul>
+     * </p>
+     */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp)
             throws ServletException, IOException {
@@ -200,177 +282,292 @@ public class TaskControlServlet extends HttpServlet {
             return;
         } else {
 
-            String currentKey = "";
-            String taskName = "";
-            String taskClassname = "";
-            String timeunit = "";
-            Long initialDelay = Long.MIN_VALUE;
-            Long interval = Long.MIN_VALUE;
-            boolean inTask = false;
+            List<ParsedTask> parsed = Lists.newArrayList();
+            boolean bulk = parseTasks(req, parsed);
 
-            JsonParser parser = Json.createParser(req.getInputStream());
-            while (parser.hasNext()) {
-                switch (parser.next()) {
-                case START_OBJECT:
-                    if ("task".equals(currentKey)) {
-                        inTask = true;
-                    }
-                    break;
+            if (bulk) {
+                startTasks(parsed, resp);
+            } else if (parsed.size() == 1 && parsed.get(0).isComplete()) {
+                startTask(parsed.get(0), req, resp);
+            } else {
+                prepareBadRequestJson(resp);
+            }
+        }
+    }
 
-                case KEY_NAME:
-                    currentKey = parser.getString();
-                    break;
+    /**
+     * Handles HTTP PATCH requests.
+     * 
+     * <p>
+     * The Schedule of the task with the id at the end of the path is replaced
+     * without stopping the task. The input holds the new Schedule as
+     * <code>{"task": {...}}</code>, with either a <code>cron</code> expression
+     * or an <code>interval</code>, <code>time_unit</code> and optional
+     * <code>initial_delay</code>.
+     * </p>
+     * 
+     * <p>
+     * This method can return the following HTTP status codes:
+     * <ul>
+     * <li><strong>200</strong>: the task was rescheduled and a status message
+     * is returned.</li>
+     * <li><strong>400</strong>: the id or the new Schedule is missing or
+     * invalid.</li>
+     * <li><strong>404</strong>: there is no task with the id.</li>
+     * <li><strong>415</strong>: the input is not JSON.</li>
+     * <li><strong>500</strong>: an internal error occurred and an error message
+     * will be returned.</li>
+     * </ul>
+     * </p>
+     */
+    protected void doPatch(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        MediaType mediaType = MediaType.parse(req
+                .getHeader(HttpHeaders.CONTENT_TYPE));
+        if (!(mediaType.equals(MediaType.JSON_UTF_8) || mediaType
+                .equals(MediaType.JSON_UTF_8.withoutParameters()))) {
+            prepareUnsupportedMediaTypeJson(resp);
+            return;
+        }
 
-                case VALUE_STRING:
-                    if (inTask) {
-                        if ("task_name".equals(currentKey)
-                                && taskName.isEmpty()) {
-                            taskName = parser.getString();
-                        } else if ("task_classname".equals(currentKey)
-                                && taskClassname.isEmpty()) {
-                            taskClassname = parser.getString();
-                        } else if ("time_unit".equals(currentKey)
-                                && timeunit.isEmpty()) {
-                            timeunit = parser.getString();
-                        }
-                    }
-                    break;
+        Integer taskId;
+        try {
+            taskId = Integer.valueOf(Strings.nullToEmpty(req.getPathInfo())
+                    .replaceFirst("^/", ""));
+        } catch (NumberFormatException e) {
+            prepareBadRequestJson(resp);
+            return;
+        }
+        List<ParsedTask> parsed = Lists.newArrayList();
+        if (parseTasks(req, parsed) || parsed.size() != 1) {
+            prepareBadRequestJson(resp);
+            return;
+        }
 
-                case VALUE_NUMBER:
-                    if (inTask) {
-                        if ("initial_delay".equals(currentKey)
-                                && initialDelay.equals(Long.MIN_VALUE)) {
-                            initialDelay = parser.getLong();
-                        } else if ("interval".equals(currentKey)
-                                && interval.equals(Long.MIN_VALUE)) {
-                            interval = parser.getLong();
-                        }
-                    }
-                    break;
+        ParsedTask task = parsed.get(0);
+        boolean rescheduled;
+        try {
+            rescheduled = taskController.reschedule(taskId, task.initialDelay,
+                    task.interval, task.timeunit, task.options());
+        } catch (IllegalArgumentException e) {
+            prepareBadRequestJson(resp);
+            return;
+        }
+        if (rescheduled) {
+            prepareSuccessStatus(resp, HttpServletResponse.SC_OK,
+                    TASK_RESCHEDULED_BODY);
+        } else {
+            writeJson(resp, HttpServletResponse.SC_NOT_FOUND,
+                    TASK_NOT_FOUND_BODY);
+        }
+    }
 
-                case END_OBJECT:
-                    if (inTask) {
-                        inTask = false;
-                    }
-                    break;
+    /**
+     * Dispatches PATCH requests, which HttpServlet does not know, to
+     * {@link #doPatch(HttpServletRequest, HttpServletResponse)}.
+     */
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+        if (METHOD_PATCH.equals(req.getMethod())) {
+            doPatch(req, resp);
+        } else {
+            super.service(req, resp);
+        }
+    }
 
-                default:
-                    break;
+    /**
+     * Reads the tasks in the input, either a single task as
+     * <code>{"task": {...}}</code> or many as <code>{"tasks": [...]}</code>.
+     * 
+     * @return <code>true</code> if the input held many tasks.
+     */
+    private static boolean parseTasks(HttpServletRequest req,
+            List<ParsedTask> parsed) throws IOException {
+        String currentKey = "";
+        int depth = 0;
+        boolean inTasks = false;
+        boolean inOptions = false;
+        boolean bulk = false;
+        ParsedTask current = null;
+
+        JsonParser parser = PARSER_FACTORY.createParser(req
+                .getInputStream());
+        while (parser.hasNext()) {
+            JsonParser.Event event = parser.next();
+            switch (event) {
+            case START_OBJECT:
+                depth++;
+                if (current == null && depth == 2
+                        && (inTasks || "task".equals(currentKey))) {
+                    current = new ParsedTask();
+                } else if (current != null && depth == 3
+                        && "options".equals(currentKey)) {
+                    inOptions = true;
                 }
-            }
-            parser.close();
+                break;
 
-            Predicate<Long> longValueNotSet = longValueNotSet();
-            Predicate<String> stringValueNotSet = stringValueNotSet();
-            if (stringValueNotSet.apply(taskName)) {
-                prepareBadRequestJson(resp);
-                return;
-            } else if (stringValueNotSet.apply(taskClassname)) {
-                prepareBadRequestJson(resp);
-                return;
-            } else if (stringValueNotSet.apply(timeunit)) {
-                prepareBadRequestJson(resp);
-                return;
-            } else if (longValueNotSet.apply(interval)) {
-                prepareBadRequestJson(resp);
-                return;
-            } else if (longValueNotSet.apply(initialDelay)) {
-                prepareBadRequestJson(resp);
-                return;
-            }
+            case START_ARRAY:
+                if (depth == 1 && "tasks".equals(currentKey)) {
+                    inTasks = true;
+                    bulk = true;
+                }
+                break;
 
-            JMXConnector jmxc = null;
-            try {
-                jmxc = createJMXConnector();
-                TaskController taskControllerProxy = createTaskControllerProxy(jmxc);
-                Integer taskId = taskControllerProxy.startTask(taskName,
-                        taskClassname, initialDelay, interval, timeunit);
-
-                resp.setHeader(
-                        HttpHeaders.LOCATION,
-                        String.format("%s://%s:%d/%s/%d", req.getScheme(),
-                                req.getServerName(), req.getServerPort(),
-                                req.getServletPath(), taskId.intValue()));
-                prepareSuccessStatus(resp, HttpServletResponse.SC_CREATED,
-                        "Task started");
-                return;
-            } catch (MalformedObjectNameException e) {
-                prepareInternalServerErrorJson(resp);
-                return;
-            } finally {
-                if (jmxc != null) {
-                    jmxc.close();
+            case KEY_NAME:
+                currentKey = parser.getString();
+                break;
+
+            case VALUE_STRING:
+                if (current != null && depth == 2) {
+                    current.setString(currentKey, parser.getString());
+                } else if (inOptions && depth == 3) {
+                    current.setOption(currentKey, parser.getString());
                 }
-            }
+                break;
 
-        }
-    }
+            case VALUE_NUMBER:
+                if (current != null && depth == 2) {
+                    current.setLong(currentKey, parser.getLong());
+                } else if (inOptions && depth == 3) {
+                    current.setOption(currentKey, parser.getString());
+                }
+                break;
 
-    private JMXConnector createJMXConnector() throws IOException {
-        JMXServiceURL url = new JMXServiceURL(
-                "service:jmx:rmi:///jndi/rmi://:9999/jmxrmi");
-        return JMXConnectorFactory.connect(url, null);
-    }
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                if (inOptions && depth == 3) {
+                    current.setOption(currentKey, String
+                            .valueOf(event == JsonParser.Event.VALUE_TRUE));
+                }
+                break;
+
+            case END_OBJECT:
+                if (inOptions && depth == 3) {
+                    inOptions = false;
+                } else if (current != null && depth == 2) {
+                    parsed.add(current);
+                    current = null;
+                }
+                depth--;
+                break;
+
+            case END_ARRAY:
+                if (depth == 1) {
+                    inTasks = false;
+                }
+                break;
 
-    private TaskController createTaskControllerProxy(JMXConnector jmxc)
-            throws MalformedObjectNameException, IOException {
-        MBeanServerConnection mbsc = jmxc.getMBeanServerConnection();
-        ObjectName objectName = new ObjectName(TaskController.OBJECT_NAME);
-        return JMX.newMBeanProxy(mbsc, objectName, TaskController.class);
+            default:
+                break;
+            }
+        }
+        parser.close();
+
+        return bulk;
     }
 
-    private void prepareSuccessStatus(HttpServletResponse resp, int httpStatus,
-            String message) throws IOException {
-        resp.setContentType(MediaType.JSON_UTF_8.toString());
-        resp.setStatus(httpStatus);
+    private void startTask(ParsedTask task, HttpServletRequest req,
+            HttpServletResponse resp) throws IOException {
+        Integer taskId = taskController.startTask(task.taskName,
+                task.taskClassname, task.initialDelay, task.interval,
+                task.timeunit, task.options());
+        if (taskId.intValue() == Integer.MIN_VALUE) {
+            writeJson(resp, HttpServletResponse.SC_CONFLICT,
+                    TASK_NOT_STARTED_BODY);
+            return;
+        }
 
-        JsonGenerator jsonGenerator = Json.createGenerator(resp
-                .getOutputStream());
-        jsonGenerator.writeStartObject();
-        jsonGenerator.write("status", message).writeEnd().flush();
-        jsonGenerator.close();
+        resp.setHeader(
+                HttpHeaders.LOCATION,
+                String.format("%s://%s:%d/%s/%d", req.getScheme(),
+                        req.getServerName(), req.getServerPort(),
+                        req.getServletPath(), taskId.intValue()));
+        prepareSuccessStatus(resp, HttpServletResponse.SC_CREATED,
+                TASK_STARTED_BODY);
     }
 
-    private void prepareInternalServerErrorJson(HttpServletResponse resp)
+    private void startTasks(List<ParsedTask> tasks, HttpServletResponse resp)
             throws IOException {
-        resp.setContentType(MediaType.JSON_UTF_8.toString());
-        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        TaskDefinition[] definitions = new TaskDefinition[tasks.size()];
+        for (int i = 0; i < definitions.length; i++) {
+            definitions[i] = tasks.get(i).toDefinition();
+        }
+        TaskStartResult[] results = taskController.startTasks(definitions);
 
-        JsonGenerator jsonGenerator = Json.createGenerator(resp
-                .getOutputStream());
+        resp.setContentType(MediaType.JSON_UTF_8.toString());
+        resp.setStatus(HttpServletResponse.SC_OK);
+        JsonGenerator jsonGenerator = GENERATOR_FACTORY.createGenerator(
+                resp.getOutputStream(), Charsets.UTF_8);
         jsonGenerator.writeStartObject();
-        jsonGenerator
-                .write("message", "Unable to connect to internal service.")
-                .writeEnd().flush();
+        jsonGenerator.writeStartArray("results");
+        for (TaskStartResult result : results) {
+            jsonGenerator.writeStartObject();
+            if (result.getTaskName() == null) {
+                jsonGenerator.writeNull("task_name");
+            } else {
+                jsonGenerator.write("task_name", result.getTaskName());
+            }
+            if (result.getTaskId() != null) {
+                jsonGenerator.write("id", result.getTaskId().intValue());
+            } else {
+                jsonGenerator.write("error", result.getError());
+            }
+            jsonGenerator.writeEnd();
+        }
+        jsonGenerator.writeEnd().writeEnd();
         jsonGenerator.close();
     }
 
+    private void prepareSuccessStatus(HttpServletResponse resp, int httpStatus,
+            byte[] body) throws IOException {
+        writeJson(resp, httpStatus, body);
+    }
+
     private void prepareBadRequestJson(HttpServletResponse resp)
             throws IOException {
-        resp.setContentType(MediaType.JSON_UTF_8.toString());
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-
-        JsonGenerator jsonGenerator = Json.createGenerator(resp
-                .getOutputStream());
-        jsonGenerator.writeStartObject();
-        jsonGenerator.write("message", "Malformed request: Json error.")
-                .writeEnd().flush();
-        jsonGenerator.close();
+        writeJson(resp, HttpServletResponse.SC_BAD_REQUEST, BAD_REQUEST_BODY);
     }
 
     private void prepareUnsupportedMediaTypeJson(HttpServletResponse resp)
             throws IOException {
+        writeJson(resp, HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                UNSUPPORTED_MEDIA_TYPE_BODY);
+    }
+
+    private static void writeJson(HttpServletResponse resp, int httpStatus,
+            byte[] body) throws IOException {
         resp.setContentType(MediaType.JSON_UTF_8.toString());
-        resp.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+        resp.setStatus(httpStatus);
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
 
-        JsonGenerator jsonGenerator = Json.createGenerator(resp
-                .getOutputStream());
-        jsonGenerator.writeStartObject();
-        jsonGenerator
-                .write("message",
-                        "The server refused this request because the request entity is in a format not supported by the requested resource for the requested method.")
-                .writeEnd().flush();
+    /**
+     * Encodes a JSON object with a single member once, for responses whose
+     * body never changes.
+     */
+    private static byte[] encodeJson(String key, String value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator jsonGenerator = GENERATOR_FACTORY.createGenerator(out,
+                Charsets.UTF_8);
+        jsonGenerator.writeStartObject().write(key, value).writeEnd();
         jsonGenerator.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a proxy for the TaskController registered with the platform
+     * MBeanServer. The proxy calls the TaskController in-process.
+     */
+    private static TaskController platformTaskController() {
+        try {
+            return JMX.newMBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                    new ObjectName(TaskController.OBJECT_NAME),
+                    TaskController.class);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -402,4 +599,81 @@ public class TaskControlServlet extends HttpServlet {
             }
         };
     }
+
+    /**
+     * The values of one task read from a request. The first value read for
+     * each key is kept.
+     */
+    private static final class ParsedTask {
+
+        private String taskName;
+
+        private String taskClassname;
+
+        private String timeunit;
+
+        private Long initialDelay;
+
+        private Long interval;
+
+        private String cron;
+
+        private final Map<String, String> options = Maps.newHashMap();
+
+        void setString(String key, String value) {
+            if ("task_name".equals(key) && taskName == null) {
+                taskName = value;
+            } else if ("task_classname".equals(key) && taskClassname == null) {
+                taskClassname = value;
+            } else if ("time_unit".equals(key) && timeunit == null) {
+                timeunit = value;
+            } else if ("cron".equals(key) && cron == null) {
+                cron = value;
+            }
+        }
+
+        void setOption(String key, String value) {
+            if (!options.containsKey(key)) {
+                options.put(key, value);
+            }
+        }
+
+        void setLong(String key, long value) {
+            if ("initial_delay".equals(key) && initialDelay == null) {
+                initialDelay = value;
+            } else if ("interval".equals(key) && interval == null) {
+                interval = value;
+            }
+        }
+
+        boolean isComplete() {
+            Predicate<Long> longValueNotSet = longValueNotSet();
+            Predicate<String> stringValueNotSet = stringValueNotSet();
+            return !(stringValueNotSet.apply(taskName)
+                    || stringValueNotSet.apply(taskClassname)
+                    || stringValueNotSet.apply(timeunit)
+                    || longValueNotSet.apply(interval) || longValueNotSet
+                        .apply(initialDelay));
+        }
+
+        /**
+         * @return the execution options, with the cron expression if one was
+         *         given, or <code>null</code> if there are none.
+         */
+        Map<String, String> options() {
+            if (cron == null && options.isEmpty()) {
+                return null;
+            }
+            Map<String, String> all = Maps.newHashMap(options);
+            if (cron != null && !all.containsKey(CRON_OPTION)) {
+                all.put(CRON_OPTION, cron);
+            }
+            return ImmutableMap.copyOf(all);
+        }
+
+        TaskDefinition toDefinition() {
+            return new TaskDefinition(taskName, taskClassname, initialDelay,
+                    interval, timeunit, options());
+        }
+    }
 }
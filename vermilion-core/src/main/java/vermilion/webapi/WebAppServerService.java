@@ -11,6 +11,7 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.startup.Tomcat;
 
 import vermilion.core.Listeners;
+import vermilion.management.TaskController;
 
 import com.google.common.util.concurrent.AbstractService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -34,6 +35,11 @@ public class WebAppServerService extends AbstractService {
 
     /**
      * Construct a WebAppServerService to listen on port 8080.
+     * 
+     * <p>
+     * The web api controls tasks through the TaskController registered with
+     * the platform MBeanServer.
+     * </p>
      */
     public WebAppServerService() {
         this(8080);
@@ -42,18 +48,49 @@ public class WebAppServerService extends AbstractService {
     /**
      * Construct a new WebAppServerService.
      * 
+     * <p>
+     * The web api controls tasks through the TaskController registered with
+     * the platform MBeanServer.
+     * </p>
+     * 
      * @param port
      *            the port the web application server will listen on.
      */
-    @Inject
     public WebAppServerService(int port) {
+        this(port, new TaskControlServlet());
+    }
+
+    /**
+     * Construct a WebAppServerService to listen on port 8080.
+     * 
+     * @param taskController
+     *            the TaskController the web api controls tasks through.
+     */
+    public WebAppServerService(TaskController taskController) {
+        this(8080, taskController);
+    }
+
+    /**
+     * Construct a new WebAppServerService.
+     * 
+     * @param port
+     *            the port the web application server will listen on.
+     * @param taskController
+     *            the TaskController the web api controls tasks through.
+     */
+    @Inject
+    public WebAppServerService(int port, TaskController taskController) {
+        this(port, new TaskControlServlet(taskController));
+    }
+
+    private WebAppServerService(int port, TaskControlServlet servlet) {
         tomcat = new Tomcat();
         tomcat.setPort(port);
 
         File docbase = new File(System.getProperty("java.io.tmpdir"));
         Context root = tomcat.addContext("", docbase.getAbsolutePath());
 
-        Tomcat.addServlet(root, "TaskControl", new TaskControlServlet());
+        Tomcat.addServlet(root, "TaskControl", servlet);
         root.addServletMapping("/tasks", "TaskControl");
         root.addServletMapping("/tasks/*", "TaskControl");
     }
@@ -0,0 +1,39 @@
+--
+-- vermilion-execution-migration-hsqldb.sql
+--
+-- Migrates a database created with vermilion-status-schema-hsqldb.sql to the
+-- model of vermilion-execution-schema-hsqldb.sql. Existing executions are
+-- summarized from their task_execution_status rows.
+--
+
+ALTER TABLE task_execution ADD COLUMN start_time TIMESTAMP;
+ALTER TABLE task_execution ADD COLUMN end_time TIMESTAMP;
+ALTER TABLE task_execution ADD COLUMN exec_status VARCHAR(9);
+ALTER TABLE task_execution ADD COLUMN duration_ms BIGINT;
+ALTER TABLE task_execution ADD COLUMN message VARCHAR(512);
+
+UPDATE task_execution e SET
+  start_time = (SELECT MIN(s.update_time) FROM task_execution_status s
+                WHERE s.task_exec_id = e.id AND s.exec_status = 'STARTED'),
+  end_time = (SELECT MAX(s.update_time) FROM task_execution_status s
+              WHERE s.task_exec_id = e.id AND s.exec_status = 'STOPPED'),
+  exec_status = (SELECT MAX(s.exec_status) FROM task_execution_status s
+                 WHERE s.task_exec_id = e.id
+                 AND s.exec_status IN ('ABANDONED', 'COMPLETED', 'FAILED')),
+  message = (SELECT MAX(s.message) FROM task_execution_status s
+             WHERE s.task_exec_id = e.id);
+
+UPDATE task_execution
+  SET duration_ms = DATEDIFF('millisecond', start_time, end_time)
+  WHERE start_time IS NOT NULL AND end_time IS NOT NULL;
+
+COMMENT ON COLUMN task_execution.start_time   IS 'Timestamp the execution started.';
+COMMENT ON COLUMN task_execution.end_time     IS 'Timestamp the execution stopped.';
+COMMENT ON COLUMN task_execution.exec_status  IS 'The final execution status, one of ABANDONED, COMPLETED, FAILED.';
+COMMENT ON COLUMN task_execution.duration_ms  IS 'Milliseconds between the start and end of the execution.';
+COMMENT ON COLUMN task_execution.message      IS 'Optional accompanying message for the execution.';
+
+-- Once the migrated rows have been checked, the status table is no longer
+-- needed:
+--
+-- DROP TABLE task_execution_status;
@@ -0,0 +1,30 @@
+--
+-- vermilion-execution-schema-hsqldb.sql
+--
+-- One row per task execution, written when the execution stops. Use instead
+-- of vermilion-status-schema-hsqldb.sql with SingleRowJdbcStateTransition.
+--
+
+DROP TABLE IF EXISTS task_execution_status;
+DROP TABLE IF EXISTS task_execution;
+
+CREATE TABLE task_execution (
+  id           INTEGER GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+  task_name    VARCHAR(512) NOT NULL,
+  created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  start_time   TIMESTAMP,
+  end_time     TIMESTAMP,
+  exec_status  VARCHAR(9),
+  duration_ms  BIGINT,
+  message      VARCHAR(512)
+);
+
+COMMENT ON TABLE  task_execution              IS 'Captures a single execution of a task.';
+COMMENT ON COLUMN task_execution.id           IS 'Primary key, the generated Identifier for a row.';
+COMMENT ON COLUMN task_execution.task_name    IS 'The task name (as named by the application).';
+COMMENT ON COLUMN task_execution.created_time IS 'Timestamp of when this record was created.';
+COMMENT ON COLUMN task_execution.start_time   IS 'Timestamp the execution started.';
+COMMENT ON COLUMN task_execution.end_time     IS 'Timestamp the execution stopped.';
+COMMENT ON COLUMN task_execution.exec_status  IS 'The final execution status, one of ABANDONED, COMPLETED, FAILED.';
+COMMENT ON COLUMN task_execution.duration_ms  IS 'Milliseconds between the start and end of the execution.';
+COMMENT ON COLUMN task_execution.message      IS 'Optional accompanying message for the execution.';
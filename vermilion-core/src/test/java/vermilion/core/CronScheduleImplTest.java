@@ -0,0 +1,182 @@
+package vermilion.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link CronScheduleImpl}. Times are computed on the wall clock, so
+ * the expected times are exact.
+ *
+ * @author andy
+ *
+ */
+public class CronScheduleImplTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final TimeZone NEW_YORK = TimeZone
+            .getTimeZone("America/New_York");
+
+    @Test
+    public void stepsOverWildcard() {
+        assertFireTimes("*/15 * * * *", UTC, "2025-06-01 00:40",
+                "2025-06-01 00:45", "2025-06-01 01:00", "2025-06-01 01:15");
+    }
+
+    @Test
+    public void listsRangesAndSteps() {
+        assertFireTimes("5,50 8-12/2 * * *", UTC, "2025-06-01 08:10",
+                "2025-06-01 08:50", "2025-06-01 10:05", "2025-06-01 10:50",
+                "2025-06-01 12:05", "2025-06-01 12:50", "2025-06-02 08:05");
+    }
+
+    @Test
+    public void stepFromValueRunsToEndOfRange() {
+        assertFireTimes("50/5 0 * * *", UTC, "2025-06-01 00:00",
+                "2025-06-01 00:50", "2025-06-01 00:55", "2025-06-02 00:50");
+    }
+
+    @Test
+    public void namesMonthsAndDays() {
+        // 2025-06-01 is a Sunday.
+        assertFireTimes("0 9 * JUN-jul mon,WED", UTC, "2025-06-01 00:00",
+                "2025-06-02 09:00", "2025-06-04 09:00", "2025-06-09 09:00");
+    }
+
+    @Test
+    public void sevenIsSunday() {
+        assertFireTimes("0 0 * * 7", UTC, "2025-06-02 00:00",
+                "2025-06-08 00:00", "2025-06-15 00:00");
+    }
+
+    @Test
+    public void expandsMacros() {
+        assertFireTimes("@hourly", UTC, "2025-06-01 00:10",
+                "2025-06-01 01:00", "2025-06-01 02:00");
+        assertFireTimes("@daily", UTC, "2025-06-01 00:10",
+                "2025-06-02 00:00");
+        assertFireTimes("@weekly", UTC, "2025-06-02 00:10",
+                "2025-06-08 00:00");
+        assertFireTimes("@MONTHLY", UTC, "2025-06-01 00:10",
+                "2025-07-01 00:00");
+        assertFireTimes("@yearly", UTC, "2025-06-01 00:10",
+                "2026-01-01 00:00");
+    }
+
+    @Test
+    public void rejectsMalformedExpressions() {
+        for (String expression : new String[] { "* * * *", "* * * * * *",
+                "60 * * * *", "* 24 * * *", "* * 0 * *", "* * * 13 *",
+                "* * * * 8", "*/0 * * * *", "5-1 * * * *", "x * * * *",
+                "* * * FOO *", "" }) {
+            try {
+                new CronScheduleImpl(expression, UTC);
+                fail(String.format("'%s' was accepted.", expression));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void rejectsExpressionThatNeverMatches() {
+        try {
+            new CronScheduleImpl("0 0 30 2 *", UTC);
+            fail("30th of February was accepted.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void findsTheNextLeapDay() {
+        assertFireTimes("0 0 29 2 *", UTC, "2025-01-01 00:00",
+                "2028-02-29 00:00", "2032-02-29 00:00");
+    }
+
+    @Test
+    public void restrictedDayFieldsMatchEither() {
+        // The 13th of July 2025 is a Sunday; the 11th and 18th are Fridays.
+        assertFireTimes("0 0 13 * 5", UTC, "2025-07-05 00:00",
+                "2025-07-11 00:00", "2025-07-13 00:00", "2025-07-18 00:00");
+    }
+
+    @Test
+    public void wildcardDayFieldMeansBothMustMatch() {
+        assertFireTimes("0 0 */1 * 5", UTC, "2025-07-05 00:00",
+                "2025-07-11 00:00", "2025-07-18 00:00");
+    }
+
+    @Test
+    public void skippedLocalTimeFiresWhenClocksMoveOn() {
+        // On 2025-03-09 New York goes from 02:00 EST to 03:00 EDT.
+        assertFireTimes("*/30 * * * *", NEW_YORK, "2025-03-09 06:20",
+                "2025-03-09 06:30", "2025-03-09 07:00", "2025-03-09 07:30");
+        assertFireTimes("30 2 * * *", NEW_YORK, "2025-03-08 17:00",
+                "2025-03-09 07:30", "2025-03-10 06:30");
+    }
+
+    @Test
+    public void repeatedLocalTimeFiresAtBothOccurrencesEveryHour() {
+        // On 2025-11-02 New York goes from 02:00 EDT back to 01:00 EST;
+        // 04:40Z is 00:40 EDT.
+        assertFireTimes("*/15 * * * *", NEW_YORK, "2025-11-02 04:40",
+                "2025-11-02 04:45", "2025-11-02 05:00", "2025-11-02 05:15",
+                "2025-11-02 05:30", "2025-11-02 05:45", "2025-11-02 06:00",
+                "2025-11-02 06:15", "2025-11-02 06:30", "2025-11-02 06:45",
+                "2025-11-02 07:00");
+        assertFireTimes("0 * * * *", NEW_YORK, "2025-11-02 04:40",
+                "2025-11-02 05:00", "2025-11-02 06:00", "2025-11-02 07:00");
+    }
+
+    @Test
+    public void repeatedLocalTimeFiresOnceForFixedHour() {
+        assertFireTimes("30 1 * * *", NEW_YORK, "2025-11-01 16:00",
+                "2025-11-02 05:30", "2025-11-03 06:30");
+        assertFireTimes("*/20 1 * * *", NEW_YORK, "2025-11-02 04:50",
+                "2025-11-02 05:00", "2025-11-02 05:20", "2025-11-02 05:40",
+                "2025-11-03 06:00");
+    }
+
+    /**
+     * Asserts the fire times of an expression, each after the one before it.
+     *
+     * @param start
+     *            the UTC time to start from.
+     * @param expected
+     *            the UTC fire times.
+     */
+    private static void assertFireTimes(String expression, TimeZone timeZone,
+            String start, String... expected) {
+        CronScheduleImpl schedule = new CronScheduleImpl(expression, timeZone);
+        long time = utc(start);
+        for (String next : expected) {
+            time = schedule.nextWallClockFireTime(time);
+            assertEquals(expression, next, format(time));
+        }
+    }
+
+    private static long utc(String time) {
+        try {
+            return format().parse(time).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static String format(long time) {
+        return format().format(time);
+    }
+
+    private static SimpleDateFormat format() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        format.setTimeZone(UTC);
+        return format;
+    }
+}
@@ -0,0 +1,116 @@
+package vermilion.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import vermilion.core.HashedWheelTimer.Timeout;
+
+/**
+ * Tests of {@link HashedWheelTimer} on a small wheel of 4 buckets, 10
+ * milliseconds apart.
+ *
+ * @author andy
+ *
+ */
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(10l, TimeUnit.MILLISECONDS, 4);
+        timer.startAndWait();
+    }
+
+    @After
+    public void tearDown() {
+        timer.stopAndWait();
+    }
+
+    @Test
+    public void timeoutFiresAfterDelay() throws Exception {
+        FiringTask task = new FiringTask();
+        long start = System.nanoTime();
+        Timeout timeout = timer.newTimeout(task, 20l, TimeUnit.MILLISECONDS);
+
+        assertTrue(task.fired.await(5, TimeUnit.SECONDS));
+        assertTrue(task.firedAfter(start) >= 20l);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.getActiveTimeouts());
+    }
+
+    @Test
+    public void negativeDelayFiresAtOnce() throws Exception {
+        FiringTask task = new FiringTask();
+        Timeout timeout = timer.newTimeout(task, -1l, TimeUnit.SECONDS);
+
+        assertTrue(task.fired.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    public void cancelledTimeoutNeverFires() throws Exception {
+        FiringTask task = new FiringTask();
+        Timeout timeout = timer.newTimeout(task, 50l, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timer.getActiveTimeouts());
+
+        assertFalse(task.fired.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void timeoutBeyondOneRotationWaitsForItsRound() throws Exception {
+        // The wheel turns every 40 ms, so the later timeout passes its bucket
+        // 3 times before it is due.
+        FiringTask soon = new FiringTask();
+        FiringTask later = new FiringTask();
+        long start = System.nanoTime();
+        timer.newTimeout(later, 150l, TimeUnit.MILLISECONDS);
+        timer.newTimeout(soon, 30l, TimeUnit.MILLISECONDS);
+
+        assertTrue(soon.fired.await(5, TimeUnit.SECONDS));
+        assertTrue(later.fired.await(5, TimeUnit.SECONDS));
+        assertTrue(soon.firedAfter(start) >= 30l);
+        assertTrue(later.firedAfter(start) >= 150l);
+        assertTrue(later.firedNanos.get() > soon.firedNanos.get());
+    }
+
+    /**
+     * A task that records when it fired.
+     */
+    private static final class FiringTask implements Runnable {
+
+        private final CountDownLatch fired = new CountDownLatch(1);
+
+        private final AtomicLong firedNanos = new AtomicLong();
+
+        @Override
+        public void run() {
+            firedNanos.set(System.nanoTime());
+            fired.countDown();
+        }
+
+        /**
+         * @return how long after the given start the task fired, in
+         *         milliseconds.
+         */
+        long firedAfter(long startNanos) {
+            return TimeUnit.NANOSECONDS.toMillis(firedNanos.get()
+                    - startNanos);
+        }
+    }
+}
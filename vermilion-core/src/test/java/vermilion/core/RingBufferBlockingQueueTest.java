@@ -0,0 +1,175 @@
+package vermilion.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests of {@link RingBufferBlockingQueue}, including producers and consumers
+ * racing with each wait strategy.
+ *
+ * @author andy
+ *
+ */
+public class RingBufferBlockingQueueTest {
+
+    private static final int PRODUCERS = 2;
+
+    private static final int CONSUMERS = 2;
+
+    private static final int PER_PRODUCER = 5000;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() throws Exception {
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(
+                5, WaitStrategy.PARK);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(8));
+        assertFalse(queue.offer(8, 10l, TimeUnit.MILLISECONDS));
+        assertEquals(8, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+    }
+
+    @Test
+    public void elementsComeOutInOrder() throws Exception {
+        RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(
+                4, WaitStrategy.PARK);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                queue.put(round * 4 + i);
+            }
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(round * 4 + i), queue.take());
+            }
+        }
+        assertNull(queue.poll(10l, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void concurrentOffersNeverExceedCapacity() throws Exception {
+        final RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(
+                64, WaitStrategy.PARK);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> producers = Lists.newArrayList();
+        for (int p = 0; p < 4; p++) {
+            producers.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (queue.offer(i)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<?> producer : producers) {
+            producer.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(64, accepted.get());
+        assertEquals(64, queue.drainTo(Lists.<Integer> newArrayList()));
+    }
+
+    @Test
+    public void spinDeliversEveryElementOnce() throws Exception {
+        assertEveryElementDeliveredOnce(WaitStrategy.SPIN);
+    }
+
+    @Test
+    public void yieldDeliversEveryElementOnce() throws Exception {
+        assertEveryElementDeliveredOnce(WaitStrategy.YIELD);
+    }
+
+    @Test
+    public void parkDeliversEveryElementOnce() throws Exception {
+        assertEveryElementDeliveredOnce(WaitStrategy.PARK);
+    }
+
+    /**
+     * Races producers that put and consumers that take through a small queue,
+     * then checks that every element came out exactly once.
+     */
+    private void assertEveryElementDeliveredOnce(WaitStrategy waitStrategy)
+            throws Exception {
+        final RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<>(
+                64, waitStrategy);
+        final int total = PRODUCERS * PER_PRODUCER;
+        final AtomicIntegerArray deliveries = new AtomicIntegerArray(total);
+        final AtomicInteger consumed = new AtomicInteger();
+        List<Future<?>> workers = Lists.newArrayList();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int first = p * PER_PRODUCER;
+            workers.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    for (int i = first; i < first + PER_PRODUCER; i++) {
+                        queue.put(i);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (int c = 0; c < CONSUMERS; c++) {
+            workers.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    while (consumed.get() < total) {
+                        Integer e = queue.poll(10l, TimeUnit.MILLISECONDS);
+                        if (e != null) {
+                            deliveries.incrementAndGet(e);
+                            consumed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(total, consumed.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals("Deliveries of " + i, 1, deliveries.get(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
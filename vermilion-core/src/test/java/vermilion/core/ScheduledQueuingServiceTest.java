@@ -0,0 +1,204 @@
+package vermilion.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the single-flight runs of {@link ScheduledQueuingService}. Runs are
+ * queued on demand; the Schedule never fires while a test runs.
+ *
+ * @author andy
+ *
+ */
+public class ScheduledQueuingServiceTest {
+
+    private HashedWheelTimer timer;
+
+    private BlockingQueue<NamedRunnable> taskQueue;
+
+    private GatedTask task;
+
+    private ScheduledQueuingService service;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer();
+        taskQueue = new LinkedBlockingQueue<>();
+        task = new GatedTask();
+        service = new ScheduledQueuingService(Schedules.createSchedule(1l,
+                1l, TimeUnit.HOURS), task, taskQueue, timer, true);
+        service.startAndWait();
+    }
+
+    @After
+    public void tearDown() {
+        service.stopAndWait();
+        timer.stopAndWait();
+    }
+
+    @Test
+    public void idleRunIsQueued() {
+        assertTrue(service.queueNow());
+        assertEquals(1, taskQueue.size());
+        assertEquals(0l, service.getCoalescedTriggers());
+    }
+
+    @Test
+    public void runWhileQueuedIsCoalesced() {
+        service.queueNow();
+        assertTrue(service.queueNow());
+        assertEquals(1, taskQueue.size());
+        assertEquals(1l, service.getCoalescedTriggers());
+    }
+
+    @Test
+    public void runWhileRunningWaitsForItToFinish() throws Exception {
+        service.queueNow();
+        Thread running = runNext();
+
+        assertTrue(service.queueNow());
+        assertEquals(0, taskQueue.size());
+        assertEquals(0l, service.getCoalescedTriggers());
+
+        finish(running);
+        assertEquals(1, taskQueue.size());
+    }
+
+    @Test
+    public void runWhilePendingIsCoalesced() throws Exception {
+        service.queueNow();
+        Thread running = runNext();
+        service.queueNow();
+
+        assertTrue(service.queueNow());
+        assertTrue(service.queueNow());
+        assertEquals(2l, service.getCoalescedTriggers());
+
+        finish(running);
+        assertEquals(1, taskQueue.size());
+        finish(runNext());
+        assertEquals(0, taskQueue.size());
+    }
+
+    @Test
+    public void finishedRunReturnsToIdle() throws Exception {
+        service.queueNow();
+        finish(runNext());
+        assertEquals(0, taskQueue.size());
+
+        assertTrue(service.queueNow());
+        assertEquals(1, taskQueue.size());
+        assertEquals(0l, service.getCoalescedTriggers());
+    }
+
+    @Test
+    public void discardedRunReturnsToIdle() {
+        service.queueNow();
+        ((Discardable) taskQueue.poll()).discarded();
+
+        assertTrue(service.queueNow());
+        assertEquals(1, taskQueue.size());
+        assertEquals(0l, service.getCoalescedTriggers());
+    }
+
+    @Test
+    public void pendingRunIsDroppedWhenStopped() throws Exception {
+        service.queueNow();
+        Thread running = runNext();
+        service.queueNow();
+
+        service.stopAndWait();
+        finish(running);
+        assertEquals(0, taskQueue.size());
+    }
+
+    /**
+     * Starts the next queued run on its own thread and waits until the task
+     * is running.
+     */
+    private Thread runNext() throws InterruptedException {
+        NamedRunnable run = taskQueue.poll();
+        assertNotNull(run);
+        Thread thread = new Thread(run);
+        thread.start();
+        assertTrue(task.started.tryAcquire(5, TimeUnit.SECONDS));
+        return thread;
+    }
+
+    /**
+     * Lets a running task finish and waits for its run to end.
+     */
+    private void finish(Thread running) throws InterruptedException {
+        task.release.countDown();
+        running.join(5000l);
+        task.release = new CountDownLatch(1);
+    }
+
+    /**
+     * A task that runs until it is released.
+     */
+    private static final class GatedTask implements NamedRunnable {
+
+        private final Semaphore started = new Semaphore(0);
+
+        private volatile CountDownLatch release = new CountDownLatch(1);
+
+        private volatile String name = "gated";
+
+        private volatile Integer executionId;
+
+        private volatile NamedRunnableState state;
+
+        @Override
+        public void run() {
+            CountDownLatch latch = release;
+            started.release();
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void setExecutionId(Integer executionId) {
+            this.executionId = executionId;
+        }
+
+        @Override
+        public Integer getExecutionId() {
+            return executionId;
+        }
+
+        @Override
+        public NamedRunnableState getState() {
+            return state;
+        }
+
+        @Override
+        public void setState(NamedRunnableState state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package vermilion.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Test;
+
+import vermilion.core.NamedRunnable;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Service.State;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Tests of {@link BatchingJdbcStateTransition} against a stub DataSource that
+ * accepts every statement.
+ *
+ * @author andy
+ *
+ */
+public class BatchingJdbcStateTransitionTest {
+
+    private final StubDataSource dataSource = new StubDataSource();
+
+    private BatchingJdbcStateTransition stateTransition;
+
+    @After
+    public void tearDown() {
+        dataSource.release.countDown();
+        if (stateTransition != null) {
+            stateTransition.stopAndWait();
+        }
+    }
+
+    @Test
+    public void fullBatchIsFlushedAtOnce() throws Exception {
+        stateTransition = create(16, 2, TimeUnit.HOURS.toMillis(1l));
+        stateTransition.startAndWait();
+        Task task = new Task();
+
+        stateTransition.starting(task);
+        stateTransition.started(task);
+
+        awaitFlushes(1);
+        assertEquals(2l, stateTransition.getWrittenCount());
+        assertEquals(1, dataSource.executeBatches.get());
+    }
+
+    @Test
+    public void partBatchIsFlushedAfterInterval() throws Exception {
+        stateTransition = create(16, 100, 50l);
+        stateTransition.startAndWait();
+
+        stateTransition.starting(new Task());
+
+        awaitFlushes(1);
+        assertEquals(1l, stateTransition.getWrittenCount());
+    }
+
+    @Test
+    public void transitionIsDroppedWhenBufferIsFull() {
+        stateTransition = create(1, 1, 50l);
+        Task task = new Task();
+
+        stateTransition.starting(task);
+        stateTransition.started(task);
+
+        assertEquals(1, stateTransition.getPendingCount());
+        assertEquals(1l, stateTransition.getDroppedCount());
+        assertEquals(NamedRunnable.NamedRunnableState.STARTED, task.getState());
+    }
+
+    @Test
+    public void bufferIsWrittenOutWhenStopped() throws Exception {
+        stateTransition = create(16, 1, TimeUnit.HOURS.toMillis(1l));
+        dataSource.blocked = true;
+        stateTransition.startAndWait();
+        Task task = new Task();
+
+        stateTransition.starting(task);
+        assertTrue(dataSource.entered.await(5, TimeUnit.SECONDS));
+        stateTransition.started(task);
+        stateTransition.stopping(task);
+        stateTransition.stopped(task);
+        ListenableFuture<State> stopped = stateTransition.stop();
+        dataSource.release.countDown();
+
+        assertEquals(State.TERMINATED, stopped.get(5, TimeUnit.SECONDS));
+        assertEquals(4l, stateTransition.getWrittenCount());
+        assertEquals(0, stateTransition.getPendingCount());
+        assertFalse("A flush was interrupted.", dataSource.interrupted.get());
+    }
+
+    private BatchingJdbcStateTransition create(int capacity, int batchSize,
+            long flushIntervalMillis) {
+        return new BatchingJdbcStateTransition(new Provider<DataSource>() {
+
+            @Override
+            public DataSource get() {
+                return dataSource.proxy();
+            }
+        }, capacity, batchSize, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitFlushes(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000l;
+        while (stateTransition.getFlushCount() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10l);
+        }
+        assertEquals(count, stateTransition.getFlushCount());
+    }
+
+    /**
+     * A DataSource whose connections accept every statement. If it is blocked,
+     * the first connection is only given out once it is released.
+     */
+    private static final class StubDataSource implements InvocationHandler {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+
+        private final AtomicInteger executeBatches = new AtomicInteger();
+
+        private final AtomicInteger keys = new AtomicInteger();
+
+        private volatile boolean blocked;
+
+        DataSource proxy() {
+            return proxy(DataSource.class);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted.set(true);
+            }
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                if (blocked) {
+                    entered.countDown();
+                    Uninterruptibles.awaitUninterruptibly(release);
+                }
+                return proxy(Connection.class);
+            } else if (name.equals("prepareStatement")) {
+                return proxy(PreparedStatement.class);
+            } else if (name.equals("getGeneratedKeys")) {
+                return proxy(ResultSet.class);
+            } else if (name.equals("executeUpdate")) {
+                return 1;
+            } else if (name.equals("executeBatch")) {
+                executeBatches.incrementAndGet();
+                return new int[0];
+            } else if (name.equals("next")) {
+                return true;
+            } else if (name.equals("getInt")) {
+                return keys.incrementAndGet();
+            } else if (name.equals("getAutoCommit")) {
+                return true;
+            } else if (method.getReturnType() == boolean.class) {
+                return false;
+            } else if (method.getReturnType() == int.class) {
+                return 0;
+            }
+            return null;
+        }
+
+        private <T> T proxy(Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(getClass()
+                    .getClassLoader(), new Class<?>[] { type }, this));
+        }
+    }
+
+    private static final class Task implements NamedRunnable {
+
+        private volatile String name = "task";
+
+        private volatile Integer executionId;
+
+        private volatile NamedRunnableState state;
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void setExecutionId(Integer executionId) {
+            this.executionId = executionId;
+        }
+
+        @Override
+        public Integer getExecutionId() {
+            return executionId;
+        }
+
+        @Override
+        public NamedRunnableState getState() {
+            return state;
+        }
+
+        @Override
+        public void setState(NamedRunnableState state) {
+            this.state = state;
+        }
+    }
+}